@@ -0,0 +1,77 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cluster and degree queries run by the analytics genealogy example, over basic-genealogy.gql
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    private GraknSession session;
+
+    @Setup
+    public void setup(){
+        session = Examples.inMemorySession();
+        Examples.load(session, "example-analytics-genealogy/src/main/resources/basic-genealogy.gql");
+    }
+
+    @TearDown
+    public void tearDown(){
+        session.close();
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> cluster(){
+        try (GraknGraph graph = session.open(GraknTxType.READ)) {
+            return graph.graql().compute().cluster().in("person", "marriage").members().execute();
+        }
+    }
+
+    @Benchmark
+    public Map<Long, Set<String>> degree(){
+        try (GraknGraph graph = session.open(GraknTxType.READ)) {
+            return graph.graql().compute().degree().in("person", "marriage").execute();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.concept.Concept;
+import ai.grakn.example.migration.ColumnarResult;
+import ai.grakn.graql.MatchQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Works out the average mpg and horsepower of the mtcars example's cars by number of cylinders, reading the answers
+ * of the match query as a map per answer against reading them into columns with {@link ColumnarResult}.
+ *
+ * The 32 cars of the example are copied to give larger results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ColumnarBenchmark {
+
+    private static final String MTCARS = "example-analytics-mtcars/";
+    private static final String CARS = "match $car isa car has mpg $mpg has cyl $cyl has hp $hp;";
+    private static final int MAX_CYLINDERS = 16;
+    private static final int COPIES_PER_COMMIT = 100;
+
+    @Param({"1", "1000"})
+    public int copies;
+
+    private GraknSession session;
+    private GraknGraph graph;
+
+    @Setup
+    public void setup(){
+        session = Examples.inMemorySession();
+        Examples.load(session, MTCARS + "ontology.gql");
+        Examples.loadAll(session, MTCARS + "data.gql");
+
+        List<String> cars = Arrays.stream(Examples.read(MTCARS + "data.gql").split("\n"))
+                .filter(line -> line.startsWith("insert") && line.contains("has mpg"))
+                .map(line -> line.replace("has model \"", "has model \"copy of "))
+                .collect(toList());
+        int copied = 1;
+        while(copied < copies){
+            try (GraknGraph writeGraph = session.open(GraknTxType.WRITE)) {
+                for(int i = 0; i < COPIES_PER_COMMIT && copied < copies; i++, copied++){
+                    cars.forEach(car -> writeGraph.graql().parse(car).execute());
+                }
+                writeGraph.commit();
+            }
+        }
+
+        graph = session.open(GraknTxType.READ);
+    }
+
+    @TearDown
+    public void tearDown(){
+        graph.close();
+        session.close();
+    }
+
+    @Benchmark
+    public double[] answerMaps(){
+        double[] mpg = new double[MAX_CYLINDERS];
+        double[] hp = new double[MAX_CYLINDERS];
+        long[] cars = new long[MAX_CYLINDERS];
+
+        List<Map<String, Concept>> answers = graph.graql().<MatchQuery>parse(CARS).execute();
+        for(Map<String, Concept> answer:answers){
+            int cylinders = ((Number) answer.get("cyl").asResource().getValue()).intValue();
+            mpg[cylinders] += ((Number) answer.get("mpg").asResource().getValue()).doubleValue();
+            hp[cylinders] += ((Number) answer.get("hp").asResource().getValue()).doubleValue();
+            cars[cylinders]++;
+        }
+        return averages(mpg, hp, cars);
+    }
+
+    @Benchmark
+    public double[] columns(){
+        double[] mpg = new double[MAX_CYLINDERS];
+        double[] hp = new double[MAX_CYLINDERS];
+        long[] cars = new long[MAX_CYLINDERS];
+
+        ColumnarResult.of(graph.graql().parse(CARS)).doubles("mpg").longs("cyl").longs("hp").forEachChunk(chunk -> {
+            double[] mpgs = chunk.doubles("mpg");
+            long[] cylinders = chunk.longs("cyl");
+            long[] hps = chunk.longs("hp");
+            for(int i = 0; i < chunk.size(); i++){
+                int c = (int) cylinders[i];
+                mpg[c] += mpgs[i];
+                hp[c] += hps[i];
+                cars[c]++;
+            }
+        });
+        return averages(mpg, hp, cars);
+    }
+
+    private static double[] averages(double[] mpg, double[] hp, long[] cars){
+        double[] averages = new double[MAX_CYLINDERS * 2];
+        for(int c = 0; c < MAX_CYLINDERS; c++){
+            if(cars[c] == 0) continue;
+            averages[c] = mpg[c] / cars[c];
+            averages[MAX_CYLINDERS + c] = hp[c] / cars[c];
+        }
+        return averages;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.GraknSession;
+import ai.grakn.example.migration.MappedCSVSource;
+import ai.grakn.example.migration.TemplateLoader;
+import ai.grakn.migration.csv.CSVMigrator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Migrates the games in ign.csv into an in-memory graph that already holds the genres and platforms, reading
+ * the file with the migration CSV parser and with the parallel memory-mapped parser
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvMigrationBenchmark {
+
+    private static final String GAMES = "example-csv-migration-games/";
+
+    private GraknSession session;
+    private String template;
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        session = Examples.inMemorySession();
+        Examples.load(session, GAMES + "game-ontology.gql");
+
+        TemplateLoader loader = TemplateLoader.to(session);
+        loader.load(Examples.read(GAMES + "genre-template.gql"), new CSVMigrator(Examples.file(GAMES + "genres.csv")).convert());
+        loader.load(Examples.read(GAMES + "platform-template.gql"), new CSVMigrator(Examples.file(GAMES + "platforms.csv")).convert());
+
+        template = Examples.read(GAMES + "match.gql");
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){
+        session.close();
+    }
+
+    @Benchmark
+    public void migrateGames(){
+        TemplateLoader.to(session).load(template, new CSVMigrator(Examples.file(GAMES + "ign.csv")).convert());
+    }
+
+    @Benchmark
+    public void migrateGamesMapped(){
+        try (Stream<Map<String, Object>> rows = new MappedCSVSource(Examples.file(GAMES + "ign.csv").toPath()).convert()) {
+            TemplateLoader.to(session).load(template, rows);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.Grakn;
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.graql.Query;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Locates the data and templates of the example projects, whether the benchmarks are run from the
+ * root of the repository or from the benchmarks directory, and sets up the in-memory graphs they are loaded into
+ */
+class Examples {
+
+    private static final AtomicInteger keyspaces = new AtomicInteger();
+
+    /**
+     * Open a session on a new, empty in-memory graph
+     */
+    static GraknSession inMemorySession(){
+        return Grakn.session(Grakn.IN_MEMORY, "benchmark" + keyspaces.incrementAndGet());
+    }
+
+    /**
+     * Execute the Graql file at the given path against the graph and commit
+     */
+    static void load(GraknSession session, String path){
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            graph.graql().parse(read(path)).execute();
+            graph.commit();
+        }
+    }
+
+    /**
+     * Execute each of the Graql queries in the file at the given path against the graph and commit
+     */
+    static void loadAll(GraknSession session, String path){
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            graph.graql().parseList(read(path)).forEach(Query::execute);
+            graph.commit();
+        }
+    }
+
+    static File file(String path){
+        String dir = System.getProperty("examples.dir");
+        if(dir != null) return new File(dir, path);
+
+        File file = new File(path);
+        return file.exists() ? file : new File("..", path);
+    }
+
+    static String read(String path){
+        try {
+            return Files.readAllLines(file(path).toPath()).stream().collect(joining("\n"));
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.concept.Entity;
+import ai.grakn.concept.ResourceType;
+import ai.grakn.example.migration.TaskRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes a burst of people, each in its own transaction as the multithreaded part of the genealogy example does,
+ * with the writers run on a pool of platform threads against a thread per writer. The thread per writer mode uses
+ * virtual threads when the benchmark is run on Java 21 or later.
+ *
+ * The number of writers allowed to run at once is varied from a small pool up to all of them at the same time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    @Param({"10000"})
+    public int writers;
+
+    @Param({"64", "10000"})
+    public int maxConcurrent;
+
+    @Param({"PLATFORM_POOL", "THREAD_PER_TASK"})
+    public TaskRunner.Mode mode;
+
+    private final AtomicInteger people = new AtomicInteger();
+    private GraknSession session;
+
+    @Setup
+    public void setup(){
+        session = Examples.inMemorySession();
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            ResourceType<String> firstname = graph.putResourceType("firstname", ResourceType.DataType.STRING);
+            graph.putEntityType("person").resource(firstname);
+            graph.commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        session.close();
+    }
+
+    @Benchmark
+    public long writeConcurrently(){
+        LongAdder committed = new LongAdder();
+        try (TaskRunner runner = TaskRunner.of(mode, maxConcurrent)) {
+            Stream<Callable<Integer>> writes = IntStream.range(0, writers).mapToObj(i -> this::writePerson);
+            runner.run(writes, person -> committed.increment());
+        }
+        return committed.sum();
+    }
+
+    private int writePerson(){
+        int number = people.incrementAndGet();
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            Entity person = graph.getEntityType("person").addEntity();
+            person.resource(graph.getResourceType("firstname").putResource("Name " + number));
+            graph.commit();
+        }
+        return number;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.concept.Entity;
+import ai.grakn.concept.EntityType;
+import ai.grakn.concept.RelationType;
+import ai.grakn.concept.ResourceType;
+import ai.grakn.concept.RoleType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Graph API writes made by the genealogy example: a person per transaction, and a marriage between
+ * two new people per transaction
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphApiBenchmark {
+
+    private final AtomicInteger people = new AtomicInteger();
+    private GraknSession session;
+
+    @Setup
+    public void setup(){
+        session = Examples.inMemorySession();
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            ResourceType<String> date = graph.putResourceType("date", ResourceType.DataType.STRING);
+            ResourceType<String> name = graph.putResourceType("name", ResourceType.DataType.STRING);
+            ResourceType<String> firstname = graph.putResourceType("firstname", ResourceType.DataType.STRING).superType(name);
+            ResourceType<String> surname = graph.putResourceType("surname", ResourceType.DataType.STRING).superType(name);
+            ResourceType<String> gender = graph.putResourceType("gender", ResourceType.DataType.STRING);
+
+            RoleType spouse1 = graph.putRoleType("spouse1");
+            RoleType spouse2 = graph.putRoleType("spouse2");
+            RelationType marriage = graph.putRelationType("marriage").relates(spouse1).relates(spouse2);
+            marriage.resource(date);
+
+            EntityType person = graph.putEntityType("person").plays(spouse1).plays(spouse2);
+            person.resource(firstname);
+            person.resource(surname);
+            person.resource(gender);
+
+            graph.commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        session.close();
+    }
+
+    @Benchmark
+    public void writeRandomPerson(){
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            Entity person = graph.getEntityType("person").addEntity();
+            person.resource(graph.getResourceType("firstname").putResource("Name " + people.incrementAndGet()));
+            graph.commit();
+        }
+    }
+
+    @Benchmark
+    public void writeMarriage(){
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            EntityType person = graph.getEntityType("person");
+
+            Entity husband = person.addEntity();
+            husband.resource(graph.getResourceType("firstname").putResource("Name " + people.incrementAndGet()));
+            husband.resource(graph.getResourceType("surname").putResource("Niesz"));
+            husband.resource(graph.getResourceType("gender").putResource("Male"));
+
+            Entity wife = person.addEntity();
+            wife.resource(graph.getResourceType("firstname").putResource("Name " + people.incrementAndGet()));
+            wife.resource(graph.getResourceType("surname").putResource("Young"));
+            wife.resource(graph.getResourceType("gender").putResource("Female"));
+
+            graph.getRelationType("marriage").addRelation()
+                    .addRolePlayer(graph.getRoleType("spouse1"), husband)
+                    .addRolePlayer(graph.getRoleType("spouse2"), wife)
+                    .resource(graph.getResourceType("date").putResource("12/08/1880"));
+            graph.commit();
+        }
+    }
+}
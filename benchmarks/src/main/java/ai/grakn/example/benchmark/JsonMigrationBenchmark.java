@@ -0,0 +1,89 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.GraknSession;
+import ai.grakn.example.GiphyMacro;
+import ai.grakn.example.migration.StreamingJsonSource;
+import ai.grakn.example.migration.TemplateLoader;
+import ai.grakn.migration.json.JsonMigrator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Migrates the giphy trending directory into an in-memory graph, building each file with the JSON migrator and
+ * streaming the gifs out of the files in parallel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonMigrationBenchmark {
+
+    private static final String GIPHY = "example-json-migration-giphy/src/main/resources/";
+
+    private GraknSession session;
+    private String template;
+    private String singleTemplate;
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        session = Examples.inMemorySession();
+        Examples.load(session, GIPHY + "ontology.gql");
+        template = Examples.read(GIPHY + "template.gql");
+        singleTemplate = Examples.read(GIPHY + "singletemplate.gql");
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){
+        session.close();
+    }
+
+    @Benchmark
+    public void migrateTrending(){
+        TemplateLoader.to(session)
+                .registerMacro(new GiphyMacro())
+                .load(template, new JsonMigrator(Examples.file(GIPHY + "trending")).convert());
+    }
+
+    @Benchmark
+    public void migrateTrendingStreamed(){
+        try (Stream<Map<String, Object>> gifs = new StreamingJsonSource(Examples.file(GIPHY + "trending").toPath(), "data").convert()) {
+            TemplateLoader.to(session)
+                    .registerMacro(new GiphyMacro())
+                    .load(singleTemplate, gifs);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.example.GiphyMacro;
+import ai.grakn.example.migration.StreamingJsonSource;
+import ai.grakn.example.migration.template.MacroSink;
+import ai.grakn.graql.macro.Macro;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Compares the giphy macro returning a new list of keywords for every gif, as it did before sink macros, against
+ * the giphy macro writing views onto the slug into a reused sink. The gc.alloc.rate.norm result of each benchmark
+ * is the number of bytes allocated per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MacroBenchmark {
+
+    private List<List<Object>> slugs;
+    private int next = 0;
+    private final SplittingGiphyMacro splitting = new SplittingGiphyMacro();
+    private final GiphyMacro sinking = new GiphyMacro();
+    private final MacroSink sink = new MacroSink();
+
+    @Setup
+    public void setup(){
+        try (Stream<Map<String, Object>> gifs = new StreamingJsonSource(Examples.file("example-json-migration-giphy/src/main/resources/trending").toPath(), "data").convert()) {
+            slugs = gifs.map(gif -> singletonList(gif.get("slug"))).collect(toList());
+        }
+    }
+
+    @Benchmark
+    public void returningList(Blackhole blackhole){
+        blackhole.consume(splitting.apply(nextSlug()));
+    }
+
+    @Benchmark
+    public void writingToSink(Blackhole blackhole){
+        sink.clear();
+        sinking.apply(nextSlug(), sink);
+        blackhole.consume(sink);
+    }
+
+    private List<Object> nextSlug(){
+        List<Object> slug = slugs.get(next);
+        next = next + 1 == slugs.size() ? 0 : next + 1;
+        return slug;
+    }
+
+    /**
+     * The giphy macro as it was written against the Graql macro interface
+     */
+    private static class SplittingGiphyMacro implements Macro<List<String>> {
+
+        public List<String> apply(List<Object> values) {
+            String slug = values.get(0).toString();
+            String[] keywords = slug.split("-");
+            return keywords.length > 1 ? Arrays.asList(Arrays.copyOf(keywords, keywords.length-1)) : Collections.singletonList("gif");
+        }
+
+        public String name() {
+            return "giphy";
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.migration.owl.OWLMigrator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Migrates family.owl into an in-memory graph
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OwlMigrationBenchmark {
+
+    private static final String FAMILY = "example-owl-migration/src/main/resources/family.owl";
+
+    private GraknSession session;
+    private OWLOntology ontology;
+
+    @Setup(Level.Iteration)
+    public void setup() throws OWLOntologyCreationException {
+        session = Examples.inMemorySession();
+        ontology = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(Examples.file(FAMILY));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){
+        session.close();
+    }
+
+    @Benchmark
+    public void migrateFamily(){
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            new OWLMigrator().ontology(ontology).graph(graph).migrate();
+            graph.commit();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.example.TransitiveClosure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the descendants of the first person in a generated family tree, as the descendant query of the OWL example
+ * does with the transitive op-hasAncestor relation. Each generation has a thousand people, each with two parents
+ * from the generation before.
+ *
+ * Compares naive evaluation, where each round follows the edges out of every person found so far, against
+ * semi-naive evaluation on one thread and on every available processor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReasoningBenchmark {
+
+    private static final int GENERATION_SIZE = 1000;
+
+    @Param({"100000"})
+    public int people;
+
+    private Map<Integer, Set<Integer>> children;
+    private ForkJoinPool singleThread;
+
+    @Setup
+    public void setup(){
+        Random random = new Random(0);
+        children = new HashMap<>();
+        for(int person = GENERATION_SIZE; person < people; person++){
+            int firstOfParents = (person / GENERATION_SIZE - 1) * GENERATION_SIZE;
+            for(int parent = 0; parent < 2; parent++){
+                children.computeIfAbsent(firstOfParents + random.nextInt(GENERATION_SIZE), k -> new HashSet<>()).add(person);
+            }
+        }
+        singleThread = new ForkJoinPool(1);
+    }
+
+    @TearDown
+    public void tearDown(){
+        singleThread.shutdown();
+    }
+
+    @Benchmark
+    public Set<Integer> naive(){
+        Set<Integer> descendants = new HashSet<>();
+        boolean changed = true;
+        while(changed){
+            Set<Integer> derived = new HashSet<>(children.getOrDefault(0, Collections.emptySet()));
+            for(Integer descendant:descendants){
+                derived.addAll(children.getOrDefault(descendant, Collections.emptySet()));
+            }
+            changed = descendants.addAll(derived);
+        }
+        return descendants;
+    }
+
+    @Benchmark
+    public Set<Integer> semiNaive(){
+        return new TransitiveClosure<>(children, singleThread).reachableFrom(0);
+    }
+
+    @Benchmark
+    public Set<Integer> semiNaiveParallel(){
+        return new TransitiveClosure<>(children, ForkJoinPool.commonPool()).reachableFrom(0);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.example.migration.StreamingSQLSource;
+import ai.grakn.example.migration.TemplateLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Migrates world.sql, loaded into an in-memory H2 database, into an in-memory graph. The number of countries and
+ * cities migrated is checked after each run, so a migration that fails to fill in its templates is not timed
+ * as if it had succeeded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SqlMigrationBenchmark {
+
+    private static final String WORLD = "example-sql-migration/src/main/resources/";
+    private static final String[] TABLES = {
+            "continents", "regions", "countries", "districts", "cities", "capitals", "languages", "languagesspoken"};
+    private static final int COUNTRIES = 239;
+    private static final int CITIES = 4079;
+
+    private Connection connection;
+    private GraknSession session;
+
+    @Setup(Level.Trial)
+    public void connect() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:world;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + Examples.file(WORLD + "world.sql").getAbsolutePath() + "'");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws SQLException {
+        connection.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        session = Examples.inMemorySession();
+        Examples.load(session, WORLD + "ontology.gql");
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){
+        try (GraknGraph graph = session.open(GraknTxType.READ)) {
+            check(graph, "country", COUNTRIES);
+            check(graph, "city", CITIES);
+        } finally {
+            session.close();
+        }
+    }
+
+    private static void check(GraknGraph graph, String type, int expected){
+        int migrated = graph.getEntityType(type).instances().size();
+        if(migrated != expected){
+            throw new IllegalStateException("Expected " + expected + " instances of " + type + " but migrated " + migrated);
+        }
+    }
+
+    @Benchmark
+    public void migrateWorld(){
+        TemplateLoader loader = TemplateLoader.to(session);
+        for(String table:TABLES){
+            String query = Examples.read(WORLD + table + "/query.sql");
+            try (Stream<Map<String, Object>> rows = new StreamingSQLSource(query, connection).convert()) {
+                loader.load(Examples.read(WORLD + table + "/template.gql"), rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.benchmark;
+
+import ai.grakn.example.migration.template.CompiledTemplate;
+import ai.grakn.graql.Graql;
+import ai.grakn.migration.csv.CSVMigrator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Compares filling in the games match.gql template for every row of ign.csv by parsing the template for each row
+ * against compiling it once and substituting each row into the compiled form
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TemplateBenchmark {
+
+    private String template;
+    private CompiledTemplate compiled;
+    private List<Map<String, Object>> rows;
+
+    @Setup
+    public void setup(){
+        template = Examples.read("example-csv-migration-games/match.gql");
+        compiled = CompiledTemplate.compile(template);
+        rows = new CSVMigrator(Examples.file("example-csv-migration-games/ign.csv")).convert().collect(toList());
+    }
+
+    @Benchmark
+    public void interpreted(Blackhole blackhole){
+        for(Map<String, Object> row:rows){
+            blackhole.consume(Graql.withoutGraph().parseTemplate(template, row));
+        }
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole){
+        for(Map<String, Object> row:rows){
+            blackhole.consume(Graql.withoutGraph().parseList(compiled.render(row)));
+        }
+    }
+
+    @Benchmark
+    public void compiledSubstitutionOnly(Blackhole blackhole){
+        for(Map<String, Object> row:rows){
+            blackhole.consume(compiled.render(row));
+        }
+    }
+}
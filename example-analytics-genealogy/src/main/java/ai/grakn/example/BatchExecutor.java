@@ -0,0 +1,90 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs batches of writes on a fixed pool of threads, blocking new submissions while too many batches are
+ * waiting so that only a bounded number of batches are held in memory at once
+ */
+class BatchExecutor implements AutoCloseable {
+
+    private final ExecutorService pool;
+    private final Semaphore waiting;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    /**
+     * @param threads number of batches to run at the same time
+     */
+    BatchExecutor(int threads){
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.waiting = new Semaphore(threads * 2);
+    }
+
+    /**
+     * Run the batch once there is room for it. Fails if an earlier batch has failed.
+     */
+    void submit(Runnable batch){
+        throwIfFailed();
+        try {
+            waiting.acquire();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        pool.execute(() -> {
+            try {
+                batch.run();
+            } catch (RuntimeException e){
+                failure.compareAndSet(null, e);
+            } finally {
+                waiting.release();
+            }
+        });
+    }
+
+    /**
+     * Wait for all submitted batches to finish, failing if any of them failed
+     */
+    void await(){
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        throwIfFailed();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private void throwIfFailed(){
+        if(failure.get() != null) throw failure.get();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * The members of each cluster found by a cluster query, stored compactly as one list of member IDs with
+ * the offset at which each cluster's members start
+ */
+class ClusterMembership {
+
+    private final CompactIds clusterIds = new CompactIds();
+    private final CompactIds members = new CompactIds();
+    private int[] offsets;
+
+    private ClusterMembership(int clusters){
+        offsets = new int[clusters + 1];
+    }
+
+    /**
+     * Copy the result of a cluster query into compact form. The members of each cluster are sorted, so the
+     * same result is always iterated in the same order.
+     * @param clusters members of each cluster, by cluster ID
+     */
+    static ClusterMembership of(Map<String, Set<String>> clusters){
+        ClusterMembership membership = new ClusterMembership(clusters.size());
+        int cluster = 0;
+        for(Map.Entry<String, Set<String>> entry:clusters.entrySet()){
+            membership.clusterIds.add(entry.getKey());
+            entry.getValue().forEach(membership.members::add);
+            membership.offsets[++cluster] = membership.members.size();
+            membership.members.sort(membership.offsets[cluster - 1], membership.offsets[cluster]);
+        }
+        return membership;
+    }
+
+    /**
+     * Read clusters written by {@link ClusterSnapshot#write(Path, ClusterMembership)}, one cluster ID and its
+     * members on each line
+     */
+    static ClusterMembership read(Path file){
+        Map<String, Set<String>> clusters = new LinkedHashMap<>();
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            lines.filter(line -> !line.isEmpty()).forEach(line -> {
+                String[] ids = line.split("\t");
+                clusters.put(ids[0], new HashSet<>(Arrays.asList(ids).subList(1, ids.length)));
+            });
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+        return of(clusters);
+    }
+
+    int clusters(){
+        return clusterIds.size();
+    }
+
+    String clusterId(int cluster){
+        return clusterIds.get(cluster);
+    }
+
+    int size(int cluster){
+        return offsets[cluster + 1] - offsets[cluster];
+    }
+
+    String member(int cluster, int i){
+        return members.get(offsets[cluster] + i);
+    }
+
+    /**
+     * Deliver each (cluster ID, member ID) pair in turn
+     */
+    void forEach(BiConsumer<String, String> consumer){
+        for(int cluster = 0; cluster < clusters(); cluster++){
+            String clusterId = clusterId(cluster);
+            for(int i = 0; i < size(cluster); i++){
+                consumer.accept(clusterId, member(cluster, i));
+            }
+        }
+    }
+}
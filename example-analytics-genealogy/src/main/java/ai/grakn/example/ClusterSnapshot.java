@@ -0,0 +1,133 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The clusters written to the graph by the last run of the example, kept on disk so the next run only has to
+ * look at the clusters affected by the changes made to the graph since.
+ *
+ * The file has one line per cluster: the cluster ID followed by the IDs of its members, separated by tabs.
+ */
+class ClusterSnapshot {
+
+    private final Map<String, Set<String>> members = new HashMap<>();
+    private final Map<String, String> clusterOf = new HashMap<>();
+
+    private ClusterSnapshot(){
+    }
+
+    /**
+     * Write the result of a full cluster computation to the snapshot file
+     */
+    static void write(Path file, ClusterMembership clusters){
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for(int cluster = 0; cluster < clusters.clusters(); cluster++){
+                writer.write(clusters.clusterId(cluster));
+                for(int i = 0; i < clusters.size(cluster); i++){
+                    writer.write('\t');
+                    writer.write(clusters.member(cluster, i));
+                }
+                writer.newLine();
+            }
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    static ClusterSnapshot read(Path file){
+        ClusterSnapshot snapshot = new ClusterSnapshot();
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            lines.filter(line -> !line.isEmpty()).forEach(line -> {
+                String[] ids = line.split("\t");
+                snapshot.put(ids[0], Arrays.asList(ids).subList(1, ids.length));
+            });
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+        return snapshot;
+    }
+
+    void write(Path file){
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for(Map.Entry<String, Set<String>> cluster:members.entrySet()){
+                writer.write(cluster.getKey());
+                for(String member:cluster.getValue()){
+                    writer.write('\t');
+                    writer.write(member);
+                }
+                writer.newLine();
+            }
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * IDs of every instance that was a member of a cluster
+     */
+    Set<String> instances(){
+        return clusterOf.keySet();
+    }
+
+    /**
+     * ID of the cluster the instance was a member of, or null if it was not in any cluster
+     */
+    String clusterOf(String instance){
+        return clusterOf.get(instance);
+    }
+
+    Set<String> members(String clusterId){
+        return members.get(clusterId);
+    }
+
+    boolean hasCluster(String clusterId){
+        return members.containsKey(clusterId);
+    }
+
+    /**
+     * Replace the members of a cluster, or add it if it is new
+     */
+    void put(String clusterId, Collection<String> clusterMembers){
+        remove(clusterId);
+        Set<String> memberSet = new LinkedHashSet<>(clusterMembers);
+        members.put(clusterId, memberSet);
+        memberSet.forEach(member -> clusterOf.put(member, clusterId));
+    }
+
+    void remove(String clusterId){
+        Set<String> removed = members.remove(clusterId);
+        if(removed == null) return;
+        for(String member:removed){
+            if(clusterId.equals(clusterOf.get(member))) clusterOf.remove(member);
+        }
+    }
+}
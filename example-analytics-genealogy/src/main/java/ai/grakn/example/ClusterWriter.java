@@ -0,0 +1,214 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.concept.ConceptId;
+import ai.grakn.graql.Graql;
+import ai.grakn.graql.Var;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static ai.grakn.graql.Graql.var;
+
+/**
+ * Writes the results of a cluster query to the graph as cluster entities with grouping relations to their members.
+ *
+ * Many clusters are written in each transaction, up to a maximum number of members, and large clusters are split
+ * across several transactions. Transactions are committed in parallel, with only a bounded number of them
+ * waiting at a time. Each cluster entity is identified by a cluster-id resource and the parts of clusters that
+ * have been committed are recorded in a progress file, so an interrupted run can be resumed by running it again.
+ * A part committed just before the run was interrupted may not have been recorded, so members that already have
+ * a grouping with their cluster are skipped rather than grouped twice. The progress file is kept once every part
+ * has been written, until {@link #deleteProgress()} is called.
+ */
+class ClusterWriter {
+
+    private final GraknSession session;
+    private final int batchSize;
+    private final int threads;
+    private final Path progressFile;
+
+    /**
+     * @param session session bound to the keyspace to write to
+     * @param batchSize maximum number of clusters or members written in each transaction
+     * @param threads number of transactions to commit at the same time
+     * @param progressFile file recording the parts of clusters which have been committed
+     */
+    ClusterWriter(GraknSession session, int batchSize, int threads, Path progressFile){
+        this.session = session;
+        this.batchSize = batchSize;
+        this.threads = threads;
+        this.progressFile = progressFile;
+    }
+
+    /**
+     * Write the clusters, skipping any that were committed by an earlier, interrupted, run
+     */
+    void write(ClusterMembership clusters){
+        Set<String> committed = readProgress();
+        if(!committed.isEmpty()) System.out.println("Resuming, " + committed.size() + " parts of clusters already written");
+
+        // create the cluster entities first, so the members of a cluster can be attached in any transaction
+        try (BatchExecutor executor = new BatchExecutor(threads)) {
+            for(int from = 0; from < clusters.clusters(); from += batchSize){
+                int to = Math.min(from + batchSize, clusters.clusters());
+                List<String> clusterIds = new ArrayList<>(to - from);
+                for(int cluster = from; cluster < to; cluster++) clusterIds.add(clusters.clusterId(cluster));
+                executor.submit(() -> writeClusters(clusterIds));
+            }
+            executor.await();
+        }
+
+        try (BatchExecutor executor = new BatchExecutor(threads)) {
+            List<Part> batch = new ArrayList<>();
+            int batchMembers = 0;
+            for(int cluster = 0; cluster < clusters.clusters(); cluster++){
+                for(int from = 0, index = 0; from < clusters.size(cluster); from += batchSize, index++){
+                    Part part = new Part(clusters, cluster, index, from, Math.min(from + batchSize, clusters.size(cluster)));
+                    if(committed.contains(part.key())) continue;
+
+                    if(batchMembers + part.size() > batchSize && !batch.isEmpty()){
+                        List<Part> full = batch;
+                        executor.submit(() -> writeMembers(full));
+                        batch = new ArrayList<>();
+                        batchMembers = 0;
+                    }
+                    batch.add(part);
+                    batchMembers += part.size();
+                }
+            }
+            if(!batch.isEmpty()){
+                List<Part> last = batch;
+                executor.submit(() -> writeMembers(last));
+            }
+            executor.await();
+        }
+    }
+
+    /**
+     * Delete the record of the parts of clusters that have been committed, once the clusters no longer need to be
+     * resumed
+     */
+    void deleteProgress(){
+        try {
+            Files.deleteIfExists(progressFile);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeClusters(List<String> clusterIds){
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            for(String clusterId:clusterIds){
+                if(!graph.graql().match(var("cluster").isa("cluster").has("cluster-id", clusterId)).ask().execute()){
+                    graph.graql().insert(var().isa("cluster").has("cluster-id", clusterId)).execute();
+                }
+            }
+            graph.commit();
+        }
+    }
+
+    private void writeMembers(List<Part> parts){
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            for(Part part:parts){
+                Var cluster = var("cluster").isa("cluster").has("cluster-id", part.clusterId());
+
+                // the part may have been committed by an interrupted run before it could be recorded
+                Set<String> grouped = new HashSet<>();
+                graph.graql().match(cluster, var().isa("grouping").rel("group", var("cluster")).rel("member", var("member")))
+                        .get("member").forEach(member -> grouped.add(member.getId().getValue()));
+
+                Set<Var> insertVars = new HashSet<>();
+                for(int i = part.from; i < part.to; i++){
+                    String member = part.clusters.member(part.cluster, i);
+                    if(grouped.contains(member)) continue;
+                    Var memberVar = Graql.var().id(ConceptId.of(member));
+                    insertVars.add(Graql.var().isa("grouping").rel("group", var("cluster")).rel("member", memberVar));
+                }
+
+                if(!insertVars.isEmpty()) graph.graql().match(cluster).insert(insertVars).execute();
+            }
+            graph.commit();
+        }
+        recordProgress(parts);
+    }
+
+    private Set<String> readProgress(){
+        try {
+            return Files.exists(progressFile) ? new HashSet<>(Files.readAllLines(progressFile)) : new HashSet<>();
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized void recordProgress(List<Part> parts){
+        try (BufferedWriter writer = Files.newBufferedWriter(progressFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for(Part part:parts){
+                writer.write(part.key());
+                writer.newLine();
+            }
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A range of the members of a cluster, written in the same transaction
+     */
+    private static class Part {
+        private final ClusterMembership clusters;
+        private final int cluster;
+        private final int index;
+        private final int from;
+        private final int to;
+
+        private Part(ClusterMembership clusters, int cluster, int index, int from, int to){
+            this.clusters = clusters;
+            this.cluster = cluster;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        private String clusterId(){
+            return clusters.clusterId(cluster);
+        }
+
+        private int size(){
+            return to - from;
+        }
+
+        private String key(){
+            return clusterId() + "/" + index;
+        }
+    }
+}
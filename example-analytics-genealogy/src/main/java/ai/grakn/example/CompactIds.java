@@ -0,0 +1,86 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A growable list of concept IDs stored compactly. IDs made of digits after a common prefix, such as the IDs
+ * of Titan vertices, are stored as primitive longs. If any ID does not fit that form the list falls back to
+ * storing strings.
+ */
+class CompactIds {
+
+    private String prefix = null;
+    private long[] values = new long[16];
+    private List<String> strings = null;
+    private int size = 0;
+
+    void add(String id){
+        if(strings == null && !fits(id)) {
+            List<String> copied = new ArrayList<>(Math.max(16, size * 2));
+            for(int i = 0; i < size; i++) copied.add(get(i));
+            strings = copied;
+            values = null;
+        }
+
+        if(strings != null){
+            strings.add(id);
+        } else {
+            if(size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size] = Long.parseLong(id.substring(prefix.length()));
+        }
+        size++;
+    }
+
+    String get(int i){
+        return strings != null ? strings.get(i) : prefix + values[i];
+    }
+
+    int size(){
+        return size;
+    }
+
+    /**
+     * Sort the IDs in the given range, so the order no longer depends on the order they were added in
+     */
+    void sort(int from, int to){
+        if(strings != null){
+            Collections.sort(strings.subList(from, to));
+        } else {
+            Arrays.sort(values, from, to);
+        }
+    }
+
+    private boolean fits(String id){
+        int digits = id.length();
+        while(digits > 0 && Character.isDigit(id.charAt(digits - 1))) digits--;
+
+        // leading zeros and very long numbers would not survive the round trip through a long
+        int length = id.length() - digits;
+        if(length == 0 || length > 18 || (length > 1 && id.charAt(digits) == '0')) return false;
+
+        String idPrefix = id.substring(0, digits);
+        if(prefix == null) prefix = idPrefix;
+        return prefix.equals(idPrefix);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The degree of each concept found by a degree query, stored compactly as parallel lists of degrees and concept IDs
+ */
+class DegreeTable {
+
+    /**
+     * Receives a (degree, concept ID) pair
+     */
+    interface Consumer {
+        void accept(long degree, String conceptId);
+    }
+
+    private final CompactIds conceptIds = new CompactIds();
+    private long[] degrees = new long[16];
+
+    private DegreeTable(){
+    }
+
+    /**
+     * Copy the result of a degree query into compact form
+     * @param degrees the concepts with each degree, by degree
+     */
+    static DegreeTable of(Map<Long, Set<String>> degrees){
+        DegreeTable table = new DegreeTable();
+        degrees.forEach((degree, concepts) -> concepts.forEach(concept -> table.add(degree, concept)));
+        return table;
+    }
+
+    private void add(long degree, String conceptId){
+        int i = conceptIds.size();
+        if(i == degrees.length) degrees = Arrays.copyOf(degrees, i * 2);
+        degrees[i] = degree;
+        conceptIds.add(conceptId);
+    }
+
+    int size(){
+        return conceptIds.size();
+    }
+
+    /**
+     * Deliver each (degree, concept ID) pair in turn
+     */
+    void forEach(Consumer consumer){
+        for(int i = 0; i < size(); i++){
+            consumer.accept(degrees[i], conceptIds.get(i));
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.concept.ConceptId;
+import ai.grakn.graql.Graql;
+import ai.grakn.graql.MatchQuery;
+import ai.grakn.graql.Var;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static ai.grakn.graql.Graql.var;
+
+/**
+ * Brings the clusters and degrees written by an earlier run up to date with the person and marriage instances
+ * added or removed since, without computing the clusters of the whole graph again.
+ *
+ * The instances in the graph are compared with the snapshot of the last run to find what changed. Clusters are
+ * groups of people connected by marriages, so only the groups containing an added instance, or a member of a
+ * cluster that lost an instance, are traversed again. Each of these groups keeps the ID of the old cluster it
+ * overlaps most, so a cluster that only gained or lost a few members keeps its entity and just has those
+ * groupings and its degree rewritten. The degree of a cluster is the number of its groupings, which is the
+ * number of its members, so it is not computed again either.
+ */
+class IncrementalAnalytics {
+
+    private final GraknSession session;
+    private final int batchSize;
+    private final int threads;
+    private final Path snapshotFile;
+    private final Path progressFile;
+
+    /**
+     * @param session session bound to the keyspace to update
+     * @param batchSize maximum number of clusters or members written in each transaction
+     * @param threads number of transactions to commit at the same time
+     * @param snapshotFile clusters written by the last run, updated once the graph has been
+     * @param progressFile file recording the parts of new clusters which have been committed
+     */
+    IncrementalAnalytics(GraknSession session, int batchSize, int threads, Path snapshotFile, Path progressFile){
+        this.session = session;
+        this.batchSize = batchSize;
+        this.threads = threads;
+        this.snapshotFile = snapshotFile;
+        this.progressFile = progressFile;
+    }
+
+    void update(){
+        ClusterSnapshot snapshot = ClusterSnapshot.read(snapshotFile);
+
+        Set<String> current = new HashSet<>();
+        Set<String> marriages = new HashSet<>();
+        try (GraknGraph graph = session.open(GraknTxType.READ)) {
+            instances(graph, "person").forEach(current::add);
+            instances(graph, "marriage").forEach(marriages::add);
+        }
+        current.addAll(marriages);
+
+        Set<String> added = new HashSet<>(current);
+        added.removeAll(snapshot.instances());
+        Set<String> removed = new HashSet<>(snapshot.instances());
+        removed.removeAll(current);
+        System.out.println(added.size() + " instances added and " + removed.size() + " removed since the last run");
+        if(added.isEmpty() && removed.isEmpty()) return;
+
+        // a cluster that lost a member may have split, so all of its remaining members are traversed again
+        Set<String> affected = new HashSet<>();
+        Set<String> seeds = new HashSet<>(added);
+        for(String instance:removed){
+            String clusterId = snapshot.clusterOf(instance);
+            if(affected.add(clusterId)) seeds.addAll(snapshot.members(clusterId));
+        }
+        seeds.removeAll(removed);
+
+        List<Set<String>> components = components(seeds, marriages);
+        for(Set<String> component:components){
+            for(String member:component){
+                String clusterId = snapshot.clusterOf(member);
+                if(clusterId != null) affected.add(clusterId);
+            }
+        }
+        System.out.println(components.size() + " clusters to update, from " + affected.size() + " existing clusters");
+
+        // the largest groups pick first, so a cluster that split keeps its ID for the biggest part
+        components.sort((a, b) -> Integer.compare(b.size(), a.size()));
+        Set<String> claimed = new HashSet<>();
+        Map<String, Set<String>> created = new HashMap<>();
+        List<ChangedCluster> changed = new ArrayList<>();
+        for(Set<String> component:components){
+            String clusterId = largestOverlap(component, snapshot, claimed);
+            if(clusterId == null){
+                created.put(newClusterId(component, snapshot, created), component);
+            } else {
+                claimed.add(clusterId);
+                ChangedCluster cluster = new ChangedCluster(clusterId, snapshot.members(clusterId), component);
+                if(!cluster.joined.isEmpty() || !cluster.left.isEmpty()) changed.add(cluster);
+            }
+        }
+        Set<String> deleted = new HashSet<>(affected);
+        deleted.removeAll(claimed);
+
+        // a cluster created by a run that stopped part way through already has its entity, so it is brought up to
+        // date like any other cluster rather than written again
+        try (GraknGraph graph = session.open(GraknTxType.READ)) {
+            for(Iterator<Map.Entry<String, Set<String>>> it = created.entrySet().iterator(); it.hasNext();){
+                Map.Entry<String, Set<String>> cluster = it.next();
+                if(graph.graql().match(cluster(cluster.getKey())).ask().execute()){
+                    changed.add(new ChangedCluster(cluster.getKey(), Collections.emptySet(), cluster.getValue()));
+                    it.remove();
+                }
+            }
+        }
+
+        deleteClusters(deleted);
+        updateClusters(changed);
+        createClusters(created);
+
+        deleted.forEach(snapshot::remove);
+        changed.forEach(cluster -> snapshot.put(cluster.clusterId, cluster.members));
+        created.forEach(snapshot::put);
+        snapshot.write(snapshotFile);
+
+        System.out.println("Deleted " + deleted.size() + ", updated " + changed.size() + " and created " +
+                created.size() + " clusters");
+    }
+
+    /**
+     * Group the instances reachable from the seeds into the clusters they now belong to
+     */
+    private List<Set<String>> components(Set<String> seeds, Set<String> marriages){
+        List<Set<String>> components = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        try (GraknGraph graph = session.open(GraknTxType.READ)) {
+            for(String seed:seeds){
+                if(!visited.add(seed)) continue;
+
+                Set<String> component = new HashSet<>();
+                Queue<String> queue = new ArrayDeque<>();
+                queue.add(seed);
+                while(!queue.isEmpty()){
+                    String instance = queue.poll();
+                    component.add(instance);
+                    neighbours(graph, instance, marriages.contains(instance)).forEach(neighbour -> {
+                        if(visited.add(neighbour)) queue.add(neighbour);
+                    });
+                }
+                components.add(component);
+            }
+        }
+        return components;
+    }
+
+    private static Stream<String> instances(GraknGraph graph, String type){
+        return graph.graql().match(var("x").isa(type)).select("x").stream()
+                .map(result -> result.get("x").getId().getValue());
+    }
+
+    /**
+     * The people in a marriage, or the marriages of a person
+     */
+    private static Stream<String> neighbours(GraknGraph graph, String instance, boolean marriage){
+        MatchQuery query;
+        if(marriage){
+            query = graph.graql().match(var("x").id(ConceptId.of(instance)).rel("y"), var("y").isa("person"));
+        } else {
+            query = graph.graql().match(var("x").id(ConceptId.of(instance)), var("y").isa("marriage").rel("x"));
+        }
+        return query.select("y").stream().map(result -> result.get("y").getId().getValue());
+    }
+
+    private static String largestOverlap(Set<String> component, ClusterSnapshot snapshot, Set<String> claimed){
+        Map<String, Integer> overlaps = new HashMap<>();
+        for(String member:component){
+            String clusterId = snapshot.clusterOf(member);
+            if(clusterId != null && !claimed.contains(clusterId)) overlaps.merge(clusterId, 1, Integer::sum);
+        }
+        return overlaps.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    private static String newClusterId(Set<String> component, ClusterSnapshot snapshot, Map<String, Set<String>> created){
+        String base = Collections.min(component);
+        String clusterId = base;
+        for(int i = 1; snapshot.hasCluster(clusterId) || created.containsKey(clusterId); i++){
+            clusterId = base + "-" + i;
+        }
+        return clusterId;
+    }
+
+    private void deleteClusters(Set<String> clusterIds){
+        try (BatchExecutor executor = new BatchExecutor(threads)) {
+            for(List<String> batch:partition(new ArrayList<>(clusterIds))){
+                executor.submit(() -> {
+                    try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+                        for(String clusterId:batch){
+                            graph.graql().match(cluster(clusterId), var("grouping").isa("grouping").rel("group", var("cluster")))
+                                    .delete("grouping").execute();
+                            graph.graql().match(cluster(clusterId)).delete("cluster").execute();
+                        }
+                        graph.commit();
+                    }
+                });
+            }
+            executor.await();
+        }
+    }
+
+    private void updateClusters(List<ChangedCluster> clusters){
+        try (BatchExecutor executor = new BatchExecutor(threads)) {
+            List<ChangedCluster> batch = new ArrayList<>();
+            int batchMembers = 0;
+            for(ChangedCluster cluster:clusters){
+                if(batchMembers + cluster.changes() > batchSize && !batch.isEmpty()){
+                    List<ChangedCluster> full = batch;
+                    executor.submit(() -> updateClusterBatch(full));
+                    batch = new ArrayList<>();
+                    batchMembers = 0;
+                }
+                batch.add(cluster);
+                batchMembers += cluster.changes();
+            }
+            if(!batch.isEmpty()){
+                List<ChangedCluster> last = batch;
+                executor.submit(() -> updateClusterBatch(last));
+            }
+            executor.await();
+        }
+    }
+
+    /**
+     * Make the groupings and degree of each cluster match its members. What is written depends only on what the
+     * graph already holds, so a batch committed by a run that stopped part way through is not written twice.
+     */
+    private void updateClusterBatch(List<ChangedCluster> clusters){
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            for(ChangedCluster cluster:clusters){
+                if(!graph.graql().match(cluster(cluster.clusterId)).ask().execute()){
+                    graph.graql().insert(var("cluster").isa("cluster").has("cluster-id", cluster.clusterId)).execute();
+                }
+                updateGroupings(graph, cluster.clusterId, cluster.members);
+                updateDegree(graph, cluster.clusterId, cluster.members.size());
+            }
+            graph.commit();
+        }
+    }
+
+    /**
+     * Delete the groupings of the cluster whose member has left it or no longer exists, and add a grouping for
+     * each member that does not have one
+     */
+    private static void updateGroupings(GraknGraph graph, String clusterId, Set<String> members){
+        // groupings are found through the cluster, so a grouping whose member has been deleted is found too
+        Set<String> groupings = new HashSet<>();
+        graph.graql().match(cluster(clusterId), var("grouping").isa("grouping").rel("group", var("cluster")))
+                .get("grouping").forEach(grouping -> groupings.add(grouping.getId().getValue()));
+
+        Set<String> grouped = new HashSet<>();
+        graph.graql().match(cluster(clusterId), var("grouping").isa("grouping").rel("group", var("cluster")).rel("member", var("member")))
+                .select("grouping", "member").stream().forEach(result -> {
+                    String member = result.get("member").getId().getValue();
+                    if(members.contains(member) && grouped.add(member)) {
+                        groupings.remove(result.get("grouping").getId().getValue());
+                    }
+                });
+
+        for(String grouping:groupings){
+            graph.graql().match(var("grouping").id(ConceptId.of(grouping))).delete("grouping").execute();
+        }
+
+        Set<Var> insertVars = new HashSet<>();
+        for(String member:members){
+            if(!grouped.contains(member)) {
+                insertVars.add(Graql.var().isa("grouping").rel("group", var("cluster")).rel("member", Graql.var().id(ConceptId.of(member))));
+            }
+        }
+        if(!insertVars.isEmpty()) graph.graql().match(cluster(clusterId)).insert(insertVars).execute();
+    }
+
+    /**
+     * Give the cluster the degree, replacing any other degree it has
+     */
+    private static void updateDegree(GraknGraph graph, String clusterId, long degree){
+        Set<Object> degrees = new HashSet<>();
+        graph.graql().match(cluster(clusterId).has("degree", var("degree")))
+                .get("degree").forEach(value -> degrees.add(value.asResource().getValue()));
+        if(degrees.equals(Collections.singleton(degree))) return;
+
+        for(Object old:degrees){
+            graph.graql().match(cluster(clusterId)).delete(var("cluster").has("degree", old)).execute();
+        }
+        graph.graql().match(cluster(clusterId)).insert(var("cluster").has("degree", degree)).execute();
+    }
+
+    private void createClusters(Map<String, Set<String>> clusters){
+        ClusterWriter writer = new ClusterWriter(session, batchSize, threads, progressFile);
+        writer.write(ClusterMembership.of(clusters));
+        writer.deleteProgress();
+
+        try (BatchExecutor executor = new BatchExecutor(threads)) {
+            for(List<String> batch:partition(new ArrayList<>(clusters.keySet()))){
+                executor.submit(() -> {
+                    try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+                        for(String clusterId:batch){
+                            updateDegree(graph, clusterId, clusters.get(clusterId).size());
+                        }
+                        graph.commit();
+                    }
+                });
+            }
+            executor.await();
+        }
+    }
+
+    private static Var cluster(String clusterId){
+        return var("cluster").isa("cluster").has("cluster-id", clusterId);
+    }
+
+    private List<List<String>> partition(List<String> ids){
+        List<List<String>> batches = new ArrayList<>();
+        for(int from = 0; from < ids.size(); from += batchSize){
+            batches.add(ids.subList(from, Math.min(from + batchSize, ids.size())));
+        }
+        return batches;
+    }
+
+    /**
+     * A cluster which keeps its ID but has gained or lost members
+     */
+    private static class ChangedCluster {
+        private final String clusterId;
+        private final Set<String> members;
+        private final Set<String> joined;
+        private final Set<String> left;
+
+        private ChangedCluster(String clusterId, Set<String> oldMembers, Set<String> members){
+            this.clusterId = clusterId;
+            this.members = members;
+            this.joined = new HashSet<>(members);
+            this.joined.removeAll(oldMembers);
+            this.left = new HashSet<>(oldMembers);
+            this.left.removeAll(members);
+        }
+
+        private int changes(){
+            return joined.size() + left.size();
+        }
+    }
+}
@@ -7,15 +7,20 @@ import ai.grakn.GraknTxType;
 import ai.grakn.concept.Concept;
 import ai.grakn.concept.ConceptId;
 import ai.grakn.concept.ResourceType;
+import ai.grakn.example.migration.GraqlFileLoader;
+import ai.grakn.example.migration.SessionPool;
 import ai.grakn.graql.Graql;
 import ai.grakn.graql.InsertQuery;
 import ai.grakn.graql.MatchQuery;
 import ai.grakn.graql.Var;
 import ai.grakn.graql.analytics.ClusterQuery;
 import ai.grakn.graql.analytics.DegreeQuery;
-import org.apache.commons.io.IOUtils;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -28,184 +33,231 @@ import static ai.grakn.graql.Graql.var;
  */
 public class Main {
 
+    private static final int PERSIST_BATCH_SIZE = 1000;
+    private static final int PERSIST_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final String CLUSTER_PROGRESS_FILE = "cluster-progress.txt";
+    private static final String CLUSTER_MEMBERSHIP_FILE = "cluster-progress-membership.txt";
+    private static final String CLUSTER_SNAPSHOT_FILE = "cluster-snapshot.txt";
+    private static final String KEYSPACE = "genealogy";
+
+    // one warm session for the whole run, shared by every step instead of each step opening its own
+    private static final SessionPool SESSIONS = new SessionPool(Grakn.DEFAULT_URI);
+
     public static void main(String[] args) {
+
+        // after a first full run, -Dincremental=true only updates the clusters affected by changes to the graph
+        if(Boolean.getBoolean("incremental") && Files.exists(Paths.get(CLUSTER_SNAPSHOT_FILE))) {
+            updateClusters();
+            System.out.println("Session pool: " + SESSIONS);
+            SESSIONS.close();
+            System.out.println("Finished incremental calculation!");
+            return;
+        }
+
         loadBasicGenealogy();
         testConnection();
-        Map<String, Set<String>> results = computeClusters();
+        ClusterMembership results = clustersToPersist();
         mutateOntology();
         persistClusters(results);
-        Map<Long, Set<String>> degrees = degreeOfClusters();
+        DegreeTable degrees = degreeOfClusters();
         persistDegrees(degrees);
+        ClusterSnapshot.write(Paths.get(CLUSTER_SNAPSHOT_FILE), results);
+        System.out.println("Session pool: " + SESSIONS);
+        SESSIONS.close();
         System.out.println("Finished calculation!");
     }
 
-    private static void persistDegrees(Map<Long, Set<String>> degrees) {
+    private static void updateClusters() {
 
-        // initialise the connection to engine
-        try (GraknSession session = Grakn.session(Grakn.DEFAULT_URI, "genealogy")) {
+        // get the warm session of the keyspace
+        GraknSession session = SESSIONS.session(KEYSPACE);
 
-            try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
-
-                // mutate the ontology
-                Var degree = Graql.var().label("degree").sub("resource").datatype(ResourceType.DataType.LONG);
-                Var cluster = Graql.var().label("cluster").has("degree");
+        // compare the graph with the clusters of the last run and rewrite only what changed
+        IncrementalAnalytics analytics = new IncrementalAnalytics(session, PERSIST_BATCH_SIZE, PERSIST_THREADS,
+                Paths.get(CLUSTER_SNAPSHOT_FILE), Paths.get(CLUSTER_PROGRESS_FILE));
+        analytics.update();
+    }
 
-                // execute the query
-                graph.graql().insert(degree, cluster).execute();
+    private static void persistDegrees(DegreeTable degrees) {
 
-                // don't forget to commit
-                graph.commit();
-            }
+        // open a graph (database transaction) on the warm session of the keyspace
+        try (SessionPool.Transaction transaction = SESSIONS.open(KEYSPACE, GraknTxType.WRITE)) {
+            GraknGraph graph = transaction.graph();
 
-            try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            // mutate the ontology
+            Var degree = Graql.var().label("degree").sub("resource").datatype(ResourceType.DataType.LONG);
+            Var cluster = Graql.var().label("cluster").has("degree");
 
-                // add the degrees to the cluster
-                Set<Var> degreeMutation = new HashSet<>();
-                degrees.forEach((degree, concepts) -> {
-                    concepts.forEach(concept -> {
-                        degreeMutation.add(Graql.var().id(ConceptId.of(concept)).has("degree",degree));
-                    });
-                });
+            // execute the query
+            graph.graql().insert(degree, cluster).execute();
 
-                // execute the query
-                graph.graql().insert(degreeMutation).execute();
+            // don't forget to commit
+            graph.commit();
+        }
 
-                // don't forget to commit
-                graph.commit();
+        // add the degrees to the clusters, committing a batch of clusters at a time
+        try (BatchExecutor executor = new BatchExecutor(PERSIST_THREADS)) {
+            List<Var> batch = new ArrayList<>(PERSIST_BATCH_SIZE);
+            degrees.forEach((degree, concept) -> {
+                batch.add(Graql.var().id(ConceptId.of(concept)).has("degree", degree));
+                if(batch.size() == PERSIST_BATCH_SIZE) {
+                    Set<Var> degreeMutation = new HashSet<>(batch);
+                    batch.clear();
+                    executor.submit(() -> insertDegrees(degreeMutation));
+                }
+            });
+            if(!batch.isEmpty()) {
+                Set<Var> degreeMutation = new HashSet<>(batch);
+                executor.submit(() -> insertDegrees(degreeMutation));
             }
+            executor.await();
         }
     }
 
-    private static Map<Long, Set<String>> degreeOfClusters() {
+    private static void insertDegrees(Set<Var> degreeMutation) {
+
+        // open a graph (database transaction), waiting while the pool's transactions are all in use
+        try (SessionPool.Transaction transaction = SESSIONS.open(KEYSPACE, GraknTxType.WRITE)) {
+            GraknGraph graph = transaction.graph();
+
+            // execute the query
+            graph.graql().insert(degreeMutation).execute();
 
-        // initialise the connection to engine
-        try (GraknSession session = Grakn.session(Grakn.DEFAULT_URI, "genealogy")) {
+            // don't forget to commit
+            graph.commit();
+        }
+    }
 
-            // open a graph (database transaction)
-            try (GraknGraph graph = session.open(GraknTxType.READ)) {
+    private static DegreeTable degreeOfClusters() {
 
-                // construct the analytics cluster query
-                DegreeQuery query = graph.graql().compute().degree().in("cluster", "grouping").of("cluster");
+        // open a graph (database transaction) on the warm session of the keyspace
+        try (SessionPool.Transaction transaction = SESSIONS.open(KEYSPACE, GraknTxType.READ)) {
+            GraknGraph graph = transaction.graph();
 
-                // execute the analytics query
-                Map<Long, Set<String>> degrees = query.execute();
+            // construct the analytics cluster query
+            DegreeQuery query = graph.graql().compute().degree().in("cluster", "grouping").of("cluster");
 
-                return degrees;
-            }
+            // execute the analytics query, keeping the result in compact form
+            return DegreeTable.of(query.execute());
         }
     }
 
-    private static void persistClusters(Map<String, Set<String>> results) {
+    private static void persistClusters(ClusterMembership results) {
+
+        // get the warm session of the keyspace
+        GraknSession session = SESSIONS.session(KEYSPACE);
 
-        // initialise the connection to engine
-        try (GraknSession session = Grakn.session(Grakn.DEFAULT_URI, "genealogy")) {
+        // write many clusters in each transaction, using several threads
+        ClusterWriter writer = new ClusterWriter(session, PERSIST_BATCH_SIZE, PERSIST_THREADS, Paths.get(CLUSTER_PROGRESS_FILE));
+        writer.write(results);
 
-            // iterate through results of cluster query
-            results.forEach((clusterID, memberSet) -> {
+        // the membership goes first, as progress left without it is discarded by the next run
+        deleteMembership();
+        writer.deleteProgress();
+    }
 
-                // open a graph (database transaction)
-                try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+    private static ClusterMembership clustersToPersist() {
+        Path membershipFile = Paths.get(CLUSTER_MEMBERSHIP_FILE);
 
-                    // collect the vars to insert
-                    Set<Var> insertVars = new HashSet<>();
+        // an interrupted run resumes with the clusters it was writing, so the parts it recorded as written still match
+        if(Files.exists(membershipFile)) {
+            System.out.println("Resuming with the clusters computed by the interrupted run");
+            return ClusterMembership.read(membershipFile);
+        }
 
-                    // create the cluster
-                    Var cluster = Graql.var().isa("cluster");
-                    insertVars.add(cluster);
+        try {
+            // progress recorded without the clusters it refers to cannot be trusted
+            Files.deleteIfExists(Paths.get(CLUSTER_PROGRESS_FILE));
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
 
-                    // attach the members
-                    memberSet.forEach(member -> {
-                        Var memberVar = Graql.var().id(ConceptId.of(member));
-                        insertVars.add(Graql.var().isa("grouping").rel("group", cluster).rel("member",memberVar));
-                    });
+        ClusterMembership results = computeClusters();
+        ClusterSnapshot.write(membershipFile, results);
+        return results;
+    }
 
-                    // execute query and commit
-                    graph.graql().insert(insertVars).execute();
-                    graph.commit();
-                }
-            });
+    private static void deleteMembership() {
+        try {
+            Files.deleteIfExists(Paths.get(CLUSTER_MEMBERSHIP_FILE));
+        } catch (IOException e){
+            throw new RuntimeException(e);
         }
     }
 
     private static void mutateOntology() {
 
-        // initialise the connection to engine
-        try (GraknSession session = Grakn.session(Grakn.DEFAULT_URI, "genealogy")) {
-
-            // open a graph (database transaction)
-            try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+        // open a graph (database transaction) on the warm session of the keyspace
+        try (SessionPool.Transaction transaction = SESSIONS.open(KEYSPACE, GraknTxType.WRITE)) {
+            GraknGraph graph = transaction.graph();
 
-                // create set of vars representing the mutation
-                Var group = Graql.var("group").label("group").sub("role");
-                Var member = Graql.var("member").label("member").sub("role");
-                Var grouping = Graql.var("grouping").label("grouping").sub("relation").relates(group).relates(member);
-                Var cluster = Graql.var("cluster").label("cluster").sub("entity").plays(group);
-                Var personPlaysRole = Graql.var("person").label("person").plays("member");
-                Var marriagePlaysRole = Graql.var("marriage").label("marriage").plays("member");
+            // create set of vars representing the mutation
+            Var group = Graql.var("group").label("group").sub("role");
+            Var member = Graql.var("member").label("member").sub("role");
+            Var grouping = Graql.var("grouping").label("grouping").sub("relation").relates(group).relates(member);
+            Var clusterId = Graql.var("cluster-id").label("cluster-id").sub("resource").datatype(ResourceType.DataType.STRING);
+            Var cluster = Graql.var("cluster").label("cluster").sub("entity").plays(group).has("cluster-id");
+            Var personPlaysRole = Graql.var("person").label("person").plays("member");
+            Var marriagePlaysRole = Graql.var("marriage").label("marriage").plays("member");
 
-                // construct the insert query
-                InsertQuery query = graph.graql().insert(group, member, grouping, cluster, personPlaysRole, marriagePlaysRole);
+            // construct the insert query
+            InsertQuery query = graph.graql().insert(group, member, grouping, clusterId, cluster, personPlaysRole, marriagePlaysRole);
 
-                // execute the insert query
-                query.execute();
+            // execute the insert query
+            query.execute();
 
-                // don't forget to commit the changes
-                graph.commit();
-            }
+            // don't forget to commit the changes
+            graph.commit();
         }
     }
 
-    private static Map<String, Set<String>> computeClusters() {
-
-        // initialise the connection to engine
-        try (GraknSession session = Grakn.session(Grakn.DEFAULT_URI, "genealogy")) {
+    private static ClusterMembership computeClusters() {
 
-            // open a graph (database transaction)
-            try (GraknGraph graph = session.open(GraknTxType.READ)) {
+        // open a graph (database transaction) on the warm session of the keyspace
+        try (SessionPool.Transaction transaction = SESSIONS.open(KEYSPACE, GraknTxType.READ)) {
+            GraknGraph graph = transaction.graph();
 
-                // construct the analytics cluster query
-                ClusterQuery<Map<String, Set<String>>> query = graph.graql().compute().cluster().in("person", "marriage").members();
+            // construct the analytics cluster query
+            ClusterQuery<Map<String, Set<String>>> query = graph.graql().compute().cluster().in("person", "marriage").members();
 
-                // execute the analytics query
-                Map<String, Set<String>> clusters = query.execute();
-
-                return clusters;
-            }
+            // execute the analytics query, keeping the result in compact form
+            return ClusterMembership.of(query.execute());
         }
     }
 
     private static void testConnection() {
 
-        // initialise the connection to engine
-        try (GraknSession session = Grakn.session(Grakn.DEFAULT_URI, "genealogy")) {
+        // open a graph (database transaction) on the warm session of the keyspace
+        try (SessionPool.Transaction transaction = SESSIONS.open(KEYSPACE, GraknTxType.READ)) {
+            GraknGraph graph = transaction.graph();
 
-            // open a graph (database transaction)
-            try (GraknGraph graph = session.open(GraknTxType.READ)) {
+            // construct a match query to find people
+            MatchQuery query = graph.graql().match(var("x").isa("person"));
 
-                // construct a match query to find people
-                MatchQuery query = graph.graql().match(var("x").isa("person"));
+            // execute the query
+            List<Map<String, Concept>> result = query.limit(10).execute();
 
-                // execute the query
-                List<Map<String, Concept>> result = query.limit(10).execute();
-
-                // write the results to the console
-                result.forEach(System.out::println);
-            }
+            // write the results to the console
+            result.forEach(System.out::println);
         }
     }
 
     //TODO: remove this method when updating to 0.13.0 and load from examples directory in distribution
     private static void loadBasicGenealogy() {
-        ClassLoader classLoader = Main.class.getClassLoader();
-        try (GraknSession session = Grakn.session(Grakn.DEFAULT_URI, "genealogy")) {
-            try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
-                try {
-                    graph.graql().parse(IOUtils.toString(classLoader.getResourceAsStream("basic-genealogy.gql"))).execute();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                graph.commit();
+
+        // open a graph (database transaction) on the warm session of the keyspace
+        try (SessionPool.Transaction transaction = SESSIONS.open(KEYSPACE, GraknTxType.READ)) {
+            GraknGraph graph = transaction.graph();
+
+            // a keyspace that already holds the people, for example from an earlier run, is not loaded again
+            if(graph.getEntityType("person") != null && graph.graql().match(var("x").isa("person")).ask().execute()) {
+                System.out.println("basic-genealogy is already loaded");
+                return;
             }
         }
+
+        Path genealogy = Paths.get(Main.class.getClassLoader().getResource("basic-genealogy.gql").getPath());
+        // the people are committed in batches in parallel, and the relationships between them once they exist
+        GraqlFileLoader.to(SESSIONS.session(KEYSPACE)).load(genealogy);
     }
 }
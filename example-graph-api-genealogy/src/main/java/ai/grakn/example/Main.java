@@ -14,16 +14,26 @@ import ai.grakn.concept.RelationType;
 import ai.grakn.concept.Resource;
 import ai.grakn.concept.ResourceType;
 import ai.grakn.concept.RoleType;
+import ai.grakn.example.migration.BulkWriter;
+import ai.grakn.example.migration.PreparedQuery;
+import ai.grakn.example.migration.QueryPlanCache;
+import ai.grakn.example.migration.ResourceCache;
+import ai.grakn.example.migration.ShardedWriter;
+import ai.grakn.example.migration.TaskRunner;
+import ai.grakn.example.migration.WriteSpec;
 import ai.grakn.exception.GraknValidationException;
 import ai.grakn.graql.MatchQuery;
 import ai.grakn.graql.QueryBuilder;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static ai.grakn.graql.Graql.contains;
 import static ai.grakn.graql.Graql.var;
@@ -39,6 +49,20 @@ import static ai.grakn.graql.Graql.var;
 public class Main {
     private static final String SERVER_ADDRESS = "127.0.0.1:4567";
     private static final String keyspace = "genealogy";
+    private static final int numberOfPeople = Integer.getInteger("people", 10);
+
+    //Writers run on a pool of platform threads, or with -Dexecutor=thread_per_task on a thread each (virtual on Java 21+)
+    private static final TaskRunner.Mode executor = TaskRunner.Mode.valueOf(System.getProperty("executor", "platform_pool").toUpperCase());
+    private static final int maxWriters = Integer.getInteger("writers", Runtime.getRuntime().availableProcessors() * 4);
+
+    //Resource values such as genders and surnames repeat a lot, so we remember the ones we have already put
+    private static final ResourceCache resources = new ResourceCache(10000);
+
+    //Queries asked again with only a value changed are prepared once and kept parsed, shared by every transaction
+    private static final QueryPlanCache queries = new QueryPlanCache(1000);
+    private static final PreparedQuery spousesOf = queries.prepare(
+            "$x has firstname <firstname>, isa person; $y has firstname $y_name, isa person; " +
+            "(spouse1: $x, spouse2: $y) isa marriage;");
 
     //Roles
     private static RoleType spouse;
@@ -86,13 +110,16 @@ public class Main {
             System.out.println("Writing ontology . . .");
             writeOntology(graph);
             System.out.println("Writing sample marriage . . .");
-            writeSampleRelation_Marriage();
+            writeSampleRelation_Marriage(graph);
             System.out.println("Writing sample parentship . . .");
-            writeSampleRelation_Parentship();
+            writeSampleRelation_Parentship(graph);
             System.out.println("Running sample queries . . .");
             runSampleQueries(graph);
+            System.out.println("Query plan cache: " + queries);
             graph.commit();
+            resources.committed();
         } catch (GraknValidationException e) {
+            resources.rolledBack();
             e.printStackTrace();
         }
 
@@ -102,6 +129,16 @@ public class Main {
         //Lets say we want to add 100 people each with their own name
         transactionHandlingSample_WritingManyPeople(session);
 
+        System.out.println("\n-------------------- Running Sharded Writing Example --------------------");
+        //Writers putting the same values in their own transactions conflict with each other.
+        //Instead they can hand their writes to shards that each commit on a single thread.
+        shardedWritingSample_WritingManyPeople(session);
+
+        System.out.println("\n-------------------- Running Bulk Loading Example --------------------");
+        //Committing one person per transaction is slow when there are many people to write.
+        //Instead we can commit many people in each transaction, spread across a fixed pool of threads.
+        bulkLoadingSample_WritingManyPeople(session, numberOfPeople);
+
         try(GraknGraph graph = session.open(GraknTxType.WRITE)){
             runSampleQuery_People(graph);
         }
@@ -153,13 +190,13 @@ public class Main {
     /**
      * Writes an example of a marriage relationship including all the entities and resources needed
      */
-    private static void writeSampleRelation_Marriage(){
+    private static void writeSampleRelation_Marriage(GraknGraph graph){
         //Adding a sample marriage
         //Lets create a husband
         //But first we need to define some resource which describe the husband
-        Resource<String> firstNameJohn = firstname.putResource("John");
-        Resource<String> surnameNiesz = surname.putResource("Niesz");
-        Resource<String> male = gender.putResource("Male");
+        Resource<String> firstNameJohn = resources.putResource(graph, firstname, "John");
+        Resource<String> surnameNiesz = resources.putResource(graph, surname, "Niesz");
+        Resource<String> male = resources.putResource(graph, gender, "Male");
 
         //Now we can create the actual husband entity
         Entity johnNiesz = person.addEntity();
@@ -168,9 +205,9 @@ public class Main {
         johnNiesz.resource(male);
 
         //Now lets create the wife
-        Resource<String> firstNameMary = firstname.putResource("Mary");
-        Resource<String> surnameYoung = surname.putResource("Young");
-        Resource<String> female = gender.putResource("Female");
+        Resource<String> firstNameMary = resources.putResource(graph, firstname, "Mary");
+        Resource<String> surnameYoung = resources.putResource(graph, surname, "Young");
+        Resource<String> female = resources.putResource(graph, gender, "Female");
 
         Entity maryYoung = person.addEntity();
         maryYoung.resource(firstNameMary);
@@ -180,19 +217,19 @@ public class Main {
         //I now pronounce you husband and wife:
         Relation theMarriage = marriage.addRelation().addRolePlayer(spouse1, johnNiesz).addRolePlayer(spouse2, maryYoung);
 
-        Resource marriageDate = date.putResource("12/08/1880");
+        Resource marriageDate = resources.putResource(graph, date, "12/08/1880");
         theMarriage.resource(marriageDate);
     }
 
     /**
      * Writes an example of a parentship relationship including all the entities and resources needed
      */
-    private static void writeSampleRelation_Parentship(){
+    private static void writeSampleRelation_Parentship(GraknGraph graph){
         //Now lets say our couple had a child.
         //Lets first create that child: William Niesz
-        Resource<String> firstNameWilliam = firstname.putResource("William");
-        Resource<String> surnameNiesz = surname.putResource("Niesz"); 
-        Resource<String> male = gender.putResource("Male"); 
+        Resource<String> firstNameWilliam = resources.putResource(graph, firstname, "William");
+        Resource<String> surnameNiesz = resources.putResource(graph, surname, "Niesz"); 
+        Resource<String> male = resources.putResource(graph, gender, "Male"); 
 
         //Let's create William Niesz
         Entity williamNiesz = person.addEntity();
@@ -202,8 +239,8 @@ public class Main {
 
         //Let's get the parents back
         //We know they have unique first name so we will use those to get them
-        Instance john = firstname.putResource("John").owner();
-        Instance mary = firstname.putResource("Mary").owner();
+        Instance john = resources.putResource(graph, firstname, "John").owner();
+        Instance mary = resources.putResource(graph, firstname, "Mary").owner();
 
         //Congratulations! You have a son
         parentship.addRelation().addRolePlayer(parent, john).addRolePlayer(child, williamNiesz);
@@ -228,12 +265,7 @@ public class Main {
         //This query is too complex to be solved via a simple lookup. In this case we must query with Graql.
         System.out.println("    Using Graql QueryBuilder: ");
 
-        query = qb.match(
-                var("x").has("firstname", "John").isa("person"),
-                var("y").has("firstname", var("y_name")).isa("person"),
-                var().isa("marriage").
-                        rel("spouse1", "x").
-                        rel("spouse2", "y"));
+        query = spousesOf.bind(graph, "firstname", "John");
         for (Map<String, Concept> result : query) {
             System.out.println("    " + result.get("y_name"));
         }
@@ -265,21 +297,18 @@ public class Main {
      * @param factory The factory bound to a specific keyspace
      */
     private static void transactionHandlingSample_WritingManyPeople(GraknSession factory){
-        ExecutorService pool = Executors.newCachedThreadPool();
-        HashSet<Future> futures = new HashSet<>();
-
-        for(int i = 0; i < 10; i ++) {
-            int finalI = i;
-            futures.add(pool.submit(() -> writeRandomPerson(factory, finalI)));
-        }
-
-        for (Future future : futures) {
-            try {
-                future.get();
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
-            }
+        //Each person is written in its own transaction, with at most maxWriters transactions open at once
+        List<Integer> committed = new ArrayList<>();
+        try(TaskRunner runner = TaskRunner.of(executor, maxWriters)){
+            Stream<Callable<Integer>> writes = IntStream.range(0, 10).mapToObj(i -> () -> {
+                writeRandomPerson(factory, i);
+                return i;
+            });
+
+            //Results are handed back as each transaction finishes, rather than waiting on the futures one by one
+            runner.run(writes, committed::add);
         }
+        System.out.println("People written in the order they were committed: " + committed);
     }
     private static void writeRandomPerson(GraknSession factory, int personNumber){
         try(GraknGraph graph = factory.open(GraknTxType.WRITE)) {//Each thread gets it's own thread bound transaction
@@ -292,6 +321,53 @@ public class Main {
         }
     }
 
+    /**
+     * Writes many people from many threads through a sharded writer
+     * @param session The session bound to a specific keyspace
+     */
+    private static void shardedWritingSample_WritingManyPeople(GraknSession session){
+        //The writer threads hand their people to a sharded writer, which commits them in batches on a few threads of
+        //its own. The same name is always committed by the same shard, so it is never put by competing transactions
+        List<Integer> committed = new ArrayList<>();
+        try(ShardedWriter writer = ShardedWriter.to(session); TaskRunner runner = TaskRunner.of(executor, maxWriters)){
+            Stream<Callable<Integer>> writes = IntStream.range(0, 10).mapToObj(i -> () -> {
+                writeRandomPerson(writer, i);
+                return i;
+            });
+
+            runner.run(writes, committed::add);
+            System.out.println("Sharded writer: " + writer);
+        }
+        System.out.println("People written in the order they were committed: " + committed);
+    }
+    private static void writeRandomPerson(ShardedWriter writer, int personNumber){
+        Map<String, Object> personResources = Collections.singletonMap("firstname", "Name " + personNumber);
+        try {
+            writer.entity("person", personResources).join();
+        } catch (CompletionException e) {
+            e.getCause().printStackTrace();
+        }
+    }
+
+    /**
+     * Writes many people at once by committing them in batches
+     * @param session The session bound to a specific keyspace
+     * @param numberOfPeople How many people to write
+     */
+    private static void bulkLoadingSample_WritingManyPeople(GraknSession session, int numberOfPeople){
+        Stream<WriteSpec> people = IntStream.range(0, numberOfPeople)
+                .mapToObj(i -> WriteSpec.entity("person", bulkPersonResources(i), resources));
+        BulkWriter.to(session).executor(executor).resourceCache(resources).write(people);
+        System.out.println("Resource cache: " + resources);
+    }
+
+    private static Map<String, Object> bulkPersonResources(int personNumber){
+        Map<String, Object> personResources = new HashMap<>();
+        personResources.put("firstname", "Bulk Name " + personNumber);
+        personResources.put("gender", personNumber % 2 == 0 ? "Male" : "Female");
+        return personResources;
+    }
+
     private static void runSampleQuery_People(GraknGraph graph){
         System.out.println("Which people do we have now ?");
         graph.getEntityType("person").instances().forEach(p-> System.out.println("    " + p));
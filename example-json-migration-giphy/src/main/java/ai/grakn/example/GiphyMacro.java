@@ -17,29 +17,46 @@
  */
 package ai.grakn.example;
 
-import ai.grakn.graql.macro.Macro;
+import ai.grakn.example.migration.template.MacroSink;
+import ai.grakn.example.migration.template.SinkMacro;
 
-import java.util.Arrays;
 import java.util.List;
 
-import static java.util.Collections.singletonList;
-
 /**
  * Macro that will take the value from the "slug" field, split it by -
  * and return all but the last value of the split.
+ *
+ * The keywords are added to the sink as views onto the slug, so no strings or arrays are allocated per gif.
  */
-public class GiphyMacro implements Macro<List<String>> {
+public class GiphyMacro implements SinkMacro {
+
+    private static final String NO_KEYWORDS = "gif";
 
-    public List<String> apply(List<Object> values) {
-        // get first value as string
-        String slug = values.get(0).toString();
+    public void apply(List<Object> values, MacroSink sink) {
+        // get first value without converting it to a string if it already is one
+        Object value = values.get(0);
+        CharSequence slug = value instanceof CharSequence ? (CharSequence) value : value.toString();
 
-        // split
-        String[] keywords = slug.split("-");
+        // ignore trailing hyphens, as splitting on - would
+        int end = slug.length();
+        while(end > 0 && slug.charAt(end - 1) == '-') end--;
 
-        // return all except last
+        // the last part of the slug is the gif id, so the keywords end at the last hyphen
+        int last = end - 1;
+        while(last >= 0 && slug.charAt(last) != '-') last--;
+        if(last < 0){
+            sink.add(NO_KEYWORDS);
+            return;
+        }
 
-        return keywords.length > 1 ? Arrays.asList(Arrays.copyOf(keywords, keywords.length-1)) : singletonList("gif");
+        // add all except last
+        int start = 0;
+        for(int i = 0; i <= last; i++){
+            if(slug.charAt(i) == '-'){
+                sink.add(slug, start, i);
+                start = i + 1;
+            }
+        }
     }
 
     public String name() {
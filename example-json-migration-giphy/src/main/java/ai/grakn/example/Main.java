@@ -18,18 +18,19 @@
 package ai.grakn.example;
 
 import ai.grakn.Grakn;
-import ai.grakn.GraknGraph;
-import ai.grakn.GraknTxType;
+import ai.grakn.GraknSession;
 import ai.grakn.client.Client;
+import ai.grakn.example.migration.GraqlFileLoader;
+import ai.grakn.example.migration.MigrationPipeline;
+import ai.grakn.example.migration.StreamingJsonSource;
 import ai.grakn.exception.GraknValidationException;
-import ai.grakn.migration.base.Migrator;
-import ai.grakn.migration.json.JsonMigrator;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.joining;
 
@@ -38,7 +39,8 @@ public class Main {
     private static final String SERVER_ADDRESS = "127.0.0.1:4567";
     private static final String KEYSPACE = "giphy";
     private static final String DATA_DIR = "trending";
-    private static final String TEMPLATE = "template.gql";
+    private static final String DATA_ARRAY = "data";
+    private static final String TEMPLATE = "singletemplate.gql";
     private static final String ONTOLOGY = "ontology.gql";
 
     public static void main(String[] args){
@@ -54,24 +56,23 @@ public class Main {
 
 
         try {
-            GraknGraph graph = Grakn.session(Grakn.DEFAULT_URI, KEYSPACE).open(GraknTxType.WRITE);
+            GraknSession session = Grakn.session(Grakn.DEFAULT_URI, KEYSPACE);
 
             // load your ontology
-            loadOntology(graph);
+            loadOntology(session);
 
             // get resources
             String template = getResourceAsString(TEMPLATE);
-            File jsonData = new File(getResource(DATA_DIR).toString());
+            Path jsonData = getResource(DATA_DIR);
 
             System.out.println("Beginning migration");
 
-            graph.commit();
-            graph.close();
-
-            // load data in directory
-            Migrator.to(SERVER_ADDRESS, KEYSPACE)
-                    .registerMacro(new GiphyMacro())
-                    .load(template, new JsonMigrator(jsonData).convert());
+            // load data in directory, reading the files in parallel one gif at a time
+            try (Stream<Map<String, Object>> gifs = new StreamingJsonSource(jsonData, DATA_ARRAY).convert()) {
+                MigrationPipeline.to(session)
+                        .registerMacro(new GiphyMacro())
+                        .load(template, gifs);
+            }
 
             System.out.println("Migration complete");
         } catch (Exception e){
@@ -81,10 +82,8 @@ public class Main {
         System.exit(0);
     }
 
-    public static void loadOntology(GraknGraph graph) throws IOException, GraknValidationException {
-        String ontology = getResourceAsString(ONTOLOGY);
-        graph.graql().parse(ontology).execute();
-        graph.commit();
+    public static void loadOntology(GraknSession session) throws GraknValidationException {
+        GraqlFileLoader.to(session).load(getResource(ONTOLOGY));
     }
 
     public static Path getResource(String resourceName){
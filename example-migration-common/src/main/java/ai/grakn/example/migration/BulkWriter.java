@@ -0,0 +1,207 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.exception.GraknValidationException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Writes a stream of {@link WriteSpec}s to a graph, committing many writes per transaction on a fixed pool of
+ * threads. A batch that fails to commit, for example because it conflicted with another batch, is written again
+ * in a new transaction.
+ */
+public class BulkWriter {
+
+    public static final int BATCH_SIZE = 100;
+    public static final int MAX_RETRIES = 5;
+
+    private static final long RETRY_BACKOFF_MILLIS = 50;
+    private static final long REPORT_EVERY = 100000;
+
+    private final GraknSession session;
+    private int batchSize = BATCH_SIZE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxRetries = MAX_RETRIES;
+    private TaskRunner.Mode mode = TaskRunner.Mode.PLATFORM_POOL;
+    private ResourceCache resourceCache = null;
+    private InferenceCache inferenceCache = null;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    private BulkWriter(GraknSession session){
+        this.session = session;
+    }
+
+    /**
+     * @param session session bound to the keyspace to write to
+     */
+    public static BulkWriter to(GraknSession session){
+        return new BulkWriter(session);
+    }
+
+    /**
+     * Set the number of writes committed in each transaction
+     */
+    public BulkWriter batchSize(int batchSize){
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the number of threads committing batches, by default the number of available processors
+     */
+    public BulkWriter threads(int threads){
+        if(threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Set the number of times a batch that fails to commit is retried before giving up
+     */
+    public BulkWriter maxRetries(int maxRetries){
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Set whether batches are committed on a pool of platform threads, the default, or each on a thread of its own
+     * with at most the set number of threads committing at once
+     */
+    public BulkWriter executor(TaskRunner.Mode mode){
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Keep the given resource cache in step with the transactions committed and abandoned by this writer
+     */
+    public BulkWriter resourceCache(ResourceCache resourceCache){
+        this.resourceCache = resourceCache;
+        return this;
+    }
+
+    /**
+     * Tell the given cache of inferred answers which types each committed batch changed, going by the types of its
+     * specs, and forget every answer when a batch has a spec whose types are not known
+     */
+    public BulkWriter inferenceCache(InferenceCache inferenceCache){
+        this.inferenceCache = inferenceCache;
+        return this;
+    }
+
+    /**
+     * Write all the given specs, blocking until they have been committed
+     * @return the number of specs written
+     */
+    public long write(Stream<WriteSpec> specs){
+        written.set(0);
+        retries.set(0);
+        long start = System.nanoTime();
+
+        Iterator<WriteSpec> iterator = specs.iterator();
+        Iterator<Callable<Integer>> batches = new Iterator<Callable<Integer>>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Callable<Integer> next() {
+                List<WriteSpec> batch = new ArrayList<>(batchSize);
+                while(iterator.hasNext() && batch.size() < batchSize) batch.add(iterator.next());
+                return () -> commit(batch);
+            }
+        };
+
+        try (TaskRunner runner = TaskRunner.of(mode, threads)) {
+            runner.run(batches, committed -> {});
+        }
+
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.out.println("Wrote " + written.get() + " in " + millis + " ms (" + (written.get() * 1000 / millis) +
+                " per second) with " + retries.get() + " retried batches");
+        return written.get();
+    }
+
+    private int commit(List<WriteSpec> batch){
+        for(int attempt = 0; ; attempt++){
+            try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+                batch.forEach(spec -> spec.write(graph));
+                graph.commit();
+                if(resourceCache != null) resourceCache.committed();
+                if(inferenceCache != null) inferenceCache.committed(types(batch));
+                break;
+            } catch (GraknValidationException e){
+                if(resourceCache != null) resourceCache.rolledBack();
+                throw e;
+            } catch (RuntimeException e){
+                if(resourceCache != null) resourceCache.rolledBack();
+                if(attempt == maxRetries) throw e;
+                retries.incrementAndGet();
+                backoff(attempt);
+            }
+        }
+
+        long total = written.addAndGet(batch.size());
+        if(total / REPORT_EVERY != (total - batch.size()) / REPORT_EVERY){
+            System.out.println("Written " + total);
+        }
+        return batch.size();
+    }
+
+    /**
+     * The types written by the specs, or null if the types of any of them are not known
+     */
+    private static Set<String> types(List<WriteSpec> batch){
+        Set<String> types = new HashSet<>();
+        for(WriteSpec spec:batch){
+            if(spec.types() == null) return null;
+            types.addAll(spec.types());
+        }
+        return types;
+    }
+
+    private static void backoff(int attempt){
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS * (attempt + 1));
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
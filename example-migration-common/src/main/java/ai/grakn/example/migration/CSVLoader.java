@@ -0,0 +1,106 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.Grakn;
+import ai.grakn.GraknSession;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Migrates a CSV or TSV file using a Graql template, parsing the file on several threads with
+ * {@link MappedCSVSource} and filling in and committing the template through a {@link MigrationPipeline}.
+ * Takes the same main options as {@code migration.sh csv}:
+ *
+ * <pre>
+ * -i input file, read as TSV if its name ends in .tsv
+ * -t template file
+ * -k keyspace, defaults to grakn
+ * -u Grakn engine URI, defaults to the local engine
+ * -s separator, \t for tabs
+ * -b number of rows committed in each transaction
+ * -p number of parser threads
+ * -w number of threads committing transactions
+ * -c checkpoint file, to record progress in and resume from if the file exists
+ * </pre>
+ *
+ * With a checkpoint file the file is parsed on a single thread so rows are read in order, and rows found in the
+ * graph already when resuming are skipped.
+ */
+public class CSVLoader {
+
+    public static void main(String[] args) {
+        Map<String, String> options = options(args);
+        if(!options.containsKey("i") || !options.containsKey("t")) {
+            throw new IllegalArgumentException("Usage: CSVLoader -i <input> -t <template> [-k <keyspace>] [-u <uri>] [-s <separator>] [-b <batch size>] [-p <parser threads>] [-w <write threads>] [-c <checkpoint file>]");
+        }
+
+        Path input = Paths.get(options.get("i"));
+        MappedCSVSource source = new MappedCSVSource(input);
+        if(options.containsKey("s")) source.separator(separator(options.get("s")));
+        if(options.containsKey("p")) source.threads(Integer.parseInt(options.get("p")));
+
+        String template;
+        try {
+            template = new String(Files.readAllBytes(Paths.get(options.get("t"))), StandardCharsets.UTF_8);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+
+        try (GraknSession session = Grakn.session(options.getOrDefault("u", Grakn.DEFAULT_URI), options.getOrDefault("k", "grakn"))) {
+            MigrationPipeline pipeline = MigrationPipeline.to(session);
+            if(options.containsKey("b")) pipeline.batchSize(Integer.parseInt(options.get("b")));
+            if(options.containsKey("w")) pipeline.writeThreads(Integer.parseInt(options.get("w")));
+
+            long start = System.currentTimeMillis();
+            if(options.containsKey("c")) {
+                pipeline.replay(true).load(template, source, Paths.get(options.get("c")));
+            } else {
+                try (Stream<Map<String, Object>> rows = source.convert()) {
+                    pipeline.load(template, rows);
+                }
+            }
+            System.out.println("Migrated " + input.getFileName() + " in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    private static Map<String, String> options(String[] args){
+        Map<String, String> options = new HashMap<>();
+        for(int i = 0; i < args.length; i += 2){
+            if(!args[i].startsWith("-") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected an option followed by its value, found " + args[i]);
+            }
+            options.put(args[i].substring(1), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static char separator(String separator){
+        String unescaped = separator.equals("\\t") ? "\t" : separator;
+        if(unescaped.length() != 1) throw new IllegalArgumentException("Separator must be one character, was " + separator);
+        return unescaped.charAt(0);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Records how far a migration has got in a file, so that it can be resumed after it stops.
+ *
+ * Batches of rows are numbered in the order they are read and may be committed in any order. The checkpoint
+ * holds the position of the last row of the last batch before which every batch has been committed, which is
+ * where a resumed migration starts reading, and the position of the last row of the furthest batch committed,
+ * up to which a resumed migration may find rows that were already committed. The file is replaced atomically
+ * and flushed to disk every time it changes.
+ */
+public class Checkpoint {
+
+    private static final String POSITION = "position";
+    private static final String FURTHEST_POSITION = "furthestPosition";
+    private static final String ROWS = "rows";
+    private static final String COMPLETE = "complete";
+
+    private final Path file;
+    private final TreeMap<Long, CommittedBatch> committedAhead = new TreeMap<>();
+    private String position;
+    private String furthestPosition;
+    private long furthestBatch = -1;
+    private long nextBatch = 0;
+    private long rows;
+    private boolean complete;
+
+    private Checkpoint(Path file, String position, String furthestPosition, long rows, boolean complete){
+        this.file = file;
+        this.position = position;
+        this.furthestPosition = furthestPosition;
+        this.rows = rows;
+        this.complete = complete;
+    }
+
+    /**
+     * Read the checkpoint in the given file, or start a new one if the file does not exist
+     */
+    public static Checkpoint in(Path file){
+        if(!Files.exists(file)) return new Checkpoint(file, null, null, 0, false);
+
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+        return new Checkpoint(file, properties.getProperty(POSITION), properties.getProperty(FURTHEST_POSITION),
+                Long.parseLong(properties.getProperty(ROWS, "0")), Boolean.parseBoolean(properties.getProperty(COMPLETE)));
+    }
+
+    /**
+     * Position of the last row before which every row has been committed, or null if no rows have been
+     */
+    public synchronized String position(){
+        return position;
+    }
+
+    /**
+     * Position of the last row of the furthest batch committed, or null if no rows have been
+     */
+    public synchronized String furthestPosition(){
+        return furthestPosition;
+    }
+
+    /**
+     * Number of rows committed before the checkpoint position
+     */
+    public synchronized long rows(){
+        return rows;
+    }
+
+    /**
+     * Whether every row of the source has been committed
+     */
+    public synchronized boolean isComplete(){
+        return complete;
+    }
+
+    /**
+     * Start numbering batches again, for a migration resuming from this checkpoint
+     */
+    synchronized void resume(){
+        committedAhead.clear();
+        nextBatch = 0;
+        furthestBatch = -1;
+    }
+
+    /**
+     * Record that a batch has been committed
+     * @param batch number of the batch, counting from 0 since the migration was started or resumed
+     * @param lastPosition position of the last row in the batch
+     * @param size number of rows in the batch
+     * @param replayed whether the batch was read again after resuming, so may not be past the furthest position
+     */
+    synchronized void committed(long batch, String lastPosition, int size, boolean replayed){
+        committedAhead.put(batch, new CommittedBatch(lastPosition, size));
+        if(batch > furthestBatch && !replayed){
+            furthestBatch = batch;
+            furthestPosition = lastPosition;
+        }
+        while(committedAhead.containsKey(nextBatch)){
+            CommittedBatch committed = committedAhead.remove(nextBatch);
+            position = committed.lastPosition;
+            rows += committed.size;
+            nextBatch++;
+        }
+        write();
+    }
+
+    /**
+     * Record that every row of the source has been committed
+     */
+    synchronized void completed(){
+        complete = true;
+        write();
+    }
+
+    private void write(){
+        Properties properties = new Properties();
+        if(position != null) properties.setProperty(POSITION, position);
+        if(furthestPosition != null) properties.setProperty(FURTHEST_POSITION, furthestPosition);
+        properties.setProperty(ROWS, Long.toString(rows));
+        properties.setProperty(COMPLETE, Boolean.toString(complete));
+
+        StringWriter text = new StringWriter();
+        try {
+            properties.store(text, null);
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class CommittedBatch {
+        private final String lastPosition;
+        private final int size;
+
+        private CommittedBatch(String lastPosition, int size){
+            this.lastPosition = lastPosition;
+            this.size = size;
+        }
+    }
+}
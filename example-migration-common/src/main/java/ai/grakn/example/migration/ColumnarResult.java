@@ -0,0 +1,271 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.concept.Concept;
+import ai.grakn.graql.MatchQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads the answers of a match query into a column per resource variable, a chunk of answers at a time, so numeric
+ * results such as the mpg, cyl and hp of the mtcars example can be aggregated on the client without keeping a map per
+ * answer or boxing every value.
+ *
+ * Long and double resources are read into primitive arrays. String resources are dictionary encoded: each distinct
+ * value is stored once, and each answer holds the code of its value. Codes stay the same for the whole result, so
+ * they can be used to group answers. The arrays of a chunk are reused for the next chunk, so a chunk is only valid
+ * until the consumer it was given to returns.
+ */
+public class ColumnarResult {
+
+    public static final int CHUNK_SIZE = 4096;
+
+    private final MatchQuery query;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private int chunkSize = CHUNK_SIZE;
+
+    private ColumnarResult(MatchQuery query){
+        this.query = query;
+    }
+
+    /**
+     * @param query query whose answers bind the column variables to resources
+     */
+    public static ColumnarResult of(MatchQuery query){
+        return new ColumnarResult(query);
+    }
+
+    /**
+     * Read the variable, which must be bound to long resources, into a long column
+     */
+    public ColumnarResult longs(String var){
+        return column(var, new LongColumn());
+    }
+
+    /**
+     * Read the variable, which must be bound to double resources, into a double column
+     */
+    public ColumnarResult doubles(String var){
+        return column(var, new DoubleColumn());
+    }
+
+    /**
+     * Read the variable, which must be bound to string resources, into a dictionary encoded column
+     */
+    public ColumnarResult strings(String var){
+        return column(var, new StringColumn());
+    }
+
+    private ColumnarResult column(String var, Column column){
+        if(columns.containsKey(var)) {
+            throw new IllegalArgumentException("Variable " + var + " already has a column");
+        }
+        columns.put(var, column);
+        return this;
+    }
+
+    /**
+     * Set the number of answers read into each chunk
+     */
+    public ColumnarResult chunkSize(int chunkSize){
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, was " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Read the answers a chunk at a time, handing each chunk to the consumer once it is full or the answers run out
+     * @return the number of answers read
+     */
+    public long forEachChunk(Consumer<Chunk> consumer){
+        allocate(chunkSize);
+        Chunk chunk = new Chunk();
+        long answers = 0;
+
+        Iterator<Map<String, Concept>> iterator = query.stream().iterator();
+        while(iterator.hasNext()){
+            read(iterator.next(), chunk.size++);
+            answers++;
+            if(chunk.size == chunkSize){
+                consumer.accept(chunk);
+                chunk.size = 0;
+            }
+        }
+        if(chunk.size > 0) consumer.accept(chunk);
+        return answers;
+    }
+
+    /**
+     * Read all the answers into a single chunk
+     */
+    public Chunk fetchAll(){
+        int capacity = chunkSize;
+        allocate(capacity);
+        Chunk chunk = new Chunk();
+
+        Iterator<Map<String, Concept>> iterator = query.stream().iterator();
+        while(iterator.hasNext()){
+            if(chunk.size == capacity){
+                capacity *= 2;
+                allocate(capacity);
+            }
+            read(iterator.next(), chunk.size++);
+        }
+        return chunk;
+    }
+
+    private void allocate(int capacity){
+        if(columns.isEmpty()) {
+            throw new IllegalStateException("No columns to read the answers into");
+        }
+        columns.values().forEach(column -> column.capacity(capacity));
+    }
+
+    private void read(Map<String, Concept> answer, int row){
+        columns.forEach((var, column) -> {
+            Concept concept = answer.get(var);
+            if(concept == null || !concept.isResource()) {
+                throw new IllegalArgumentException("Variable " + var + " is not bound to a resource in " + answer);
+            }
+            column.set(row, concept.asResource().getValue());
+        });
+    }
+
+    /**
+     * A chunk of answers, read into the columns of the result
+     */
+    public class Chunk {
+        private int size = 0;
+
+        private Chunk(){}
+
+        /**
+         * The number of answers in the chunk, which is the number of entries of each column that are in use
+         */
+        public int size(){
+            return size;
+        }
+
+        public long[] longs(String var){
+            return column(var, LongColumn.class).values;
+        }
+
+        public double[] doubles(String var){
+            return column(var, DoubleColumn.class).values;
+        }
+
+        /**
+         * The dictionary codes of the values of a string column
+         */
+        public int[] codes(String var){
+            return column(var, StringColumn.class).codes;
+        }
+
+        /**
+         * The distinct values of a string column, indexed by their codes
+         */
+        public List<String> dictionary(String var){
+            return Collections.unmodifiableList(column(var, StringColumn.class).dictionary);
+        }
+
+        public String string(String var, int row){
+            StringColumn column = column(var, StringColumn.class);
+            return column.dictionary.get(column.codes[row]);
+        }
+
+        private <C extends Column> C column(String var, Class<C> type){
+            Column column = columns.get(var);
+            if(!type.isInstance(column)) {
+                throw new IllegalArgumentException("Variable " + var + " has no " + type.getSimpleName());
+            }
+            return type.cast(column);
+        }
+    }
+
+    private interface Column {
+        /**
+         * Make room for at least the given number of values, keeping the values already read
+         */
+        void capacity(int capacity);
+
+        void set(int row, Object value);
+    }
+
+    private static class LongColumn implements Column {
+        private long[] values = new long[0];
+
+        @Override
+        public void capacity(int capacity){
+            if(capacity > values.length) values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        public void set(int row, Object value){
+            values[row] = ((Number) value).longValue();
+        }
+    }
+
+    private static class DoubleColumn implements Column {
+        private double[] values = new double[0];
+
+        @Override
+        public void capacity(int capacity){
+            if(capacity > values.length) values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        public void set(int row, Object value){
+            values[row] = ((Number) value).doubleValue();
+        }
+    }
+
+    private static class StringColumn implements Column {
+        private int[] codes = new int[0];
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codesByValue = new HashMap<>();
+
+        @Override
+        public void capacity(int capacity){
+            if(capacity > codes.length) codes = Arrays.copyOf(codes, capacity);
+        }
+
+        @Override
+        public void set(int row, Object value){
+            String string = (String) value;
+            Integer code = codesByValue.get(string);
+            if(code == null){
+                code = dictionary.size();
+                dictionary.add(string);
+                codesByValue.put(string, code);
+            }
+            codes[row] = code;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.concept.Concept;
+import ai.grakn.concept.ConceptId;
+import ai.grakn.example.migration.GraqlStatementReader.Statement;
+import ai.grakn.exception.GraknValidationException;
+import ai.grakn.graql.InsertQuery;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads a file holding one large Graql insert query, such as an ontology or a dataset exported as Graql, without
+ * parsing the whole file as one query in one transaction.
+ *
+ * The file is read a statement at a time, twice. The first pass inserts the ontology statements, types and rules,
+ * in a single transaction. The second pass commits the data statements in batches on a fixed pool of threads.
+ *
+ * Data statements can refer to the concepts created by other statements through their variables, e.g. a marriage
+ * refers to the people it relates. A statement is only batched once the statements it refers to are either in the
+ * same batch or committed, in which case the variable is bound to the id of the committed concept. Statements
+ * that have to wait are held back and batched when the batches before them have been committed, so the id of every
+ * concept created by the file is kept in memory but the statements themselves are not.
+ */
+public class GraqlFileLoader {
+
+    public static final int BATCH_SIZE = 500;
+    public static final int MAX_RETRIES = BulkWriter.MAX_RETRIES;
+    public static final int MAX_HELD_BACK = 100000;
+
+    private static final long RETRY_BACKOFF_MILLIS = 50;
+
+    private final GraknSession session;
+    private int batchSize = BATCH_SIZE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxRetries = MAX_RETRIES;
+    private int maxHeldBack = MAX_HELD_BACK;
+    private InferenceCache inferenceCache = null;
+
+    private GraqlFileLoader(GraknSession session){
+        this.session = session;
+    }
+
+    /**
+     * @param session session bound to the keyspace to load the file into
+     */
+    public static GraqlFileLoader to(GraknSession session){
+        return new GraqlFileLoader(session);
+    }
+
+    /**
+     * Set the number of data statements committed in each transaction
+     */
+    public GraqlFileLoader batchSize(int batchSize){
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the number of threads committing batches, by default the number of available processors
+     */
+    public GraqlFileLoader threads(int threads){
+        if(threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Set the number of times a batch that fails to commit is retried before giving up
+     */
+    public GraqlFileLoader maxRetries(int maxRetries){
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Set the number of statements that can be held back waiting for the statements they refer to before the
+     * loader stops reading and waits for the batches in flight to be committed
+     */
+    public GraqlFileLoader maxHeldBack(int maxHeldBack){
+        if(maxHeldBack < 1) {
+            throw new IllegalArgumentException("Number of statements held back must be at least 1, was " + maxHeldBack);
+        }
+        this.maxHeldBack = maxHeldBack;
+        return this;
+    }
+
+    /**
+     * Tell the given cache of inferred answers which types the loader changed, each time it commits. Loading
+     * ontology statements forgets every answer, as they may add rules.
+     */
+    public GraqlFileLoader inferenceCache(InferenceCache inferenceCache){
+        this.inferenceCache = inferenceCache;
+        return this;
+    }
+
+    /**
+     * Load the insert query in the given file, blocking until it has been committed
+     * @return the number of statements loaded
+     */
+    public long load(Path file){
+        long start = System.nanoTime();
+        long ontology = loadOntology(file);
+        long data = new DataLoad().run(file);
+
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.out.println("Loaded " + ontology + " ontology and " + data + " data statements from " +
+                file.getFileName() + " in " + millis + " ms");
+        return ontology + data;
+    }
+
+    private long loadOntology(Path file){
+        List<String> ontology = new ArrayList<>();
+        try (GraqlStatementReader statements = open(file)) {
+            for(Statement statement = statements.next(); statement != null; statement = statements.next()){
+                if(statement.isOntology()) ontology.add(statement.text());
+            }
+        }
+        if(ontology.isEmpty()) return 0;
+
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            graph.graql().parse(insert(new ArrayList<>(), ontology)).execute();
+            graph.commit();
+        }
+        if(inferenceCache != null) inferenceCache.rulesChanged();
+        return ontology.size();
+    }
+
+    private static GraqlStatementReader open(Path file){
+        try {
+            return new GraqlStatementReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Build an insert query from the statements, binding the given variables to the concepts already committed
+     */
+    private static String insert(List<String> bindings, List<String> statements){
+        StringBuilder query = new StringBuilder("insert\n");
+        bindings.forEach(binding -> query.append(binding).append(";\n"));
+        statements.forEach(statement -> query.append(statement).append(";\n"));
+        return query.toString();
+    }
+
+    /**
+     * The state of loading the data statements of one file
+     */
+    private class DataLoad {
+        private final Map<String, ConceptId> committed = new ConcurrentHashMap<>();
+        private final List<Statement> heldBack = new ArrayList<>();
+        private final AtomicLong loaded = new AtomicLong();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private final Semaphore batchesInFlight = new Semaphore(threads * 2);
+
+        private ExecutorService pool;
+        private List<Statement> batch = new ArrayList<>();
+        private Set<String> definedInBatch = new HashSet<>();
+
+        long run(Path file){
+            pool = Executors.newFixedThreadPool(threads);
+            try (GraqlStatementReader statements = open(file)) {
+                int heldBackAfterFlush = 0;
+                for(Statement statement = statements.next(); statement != null && failure.get() == null; statement = statements.next()){
+                    if(statement.isOntology()) continue;
+                    if(!add(statement)) heldBack.add(statement);
+                    if(heldBack.size() >= heldBackAfterFlush + maxHeldBack){
+                        flushHeldBack();
+                        heldBackAfterFlush = heldBack.size();
+                    }
+                }
+
+                int before;
+                do {
+                    before = heldBack.size();
+                    flushHeldBack();
+                } while(!heldBack.isEmpty() && heldBack.size() < before && failure.get() == null);
+
+                if(failure.get() == null && !heldBack.isEmpty()){
+                    Set<String> missing = new LinkedHashSet<>();
+                    heldBack.forEach(statement -> missing.addAll(statement.refers()));
+                    missing.removeAll(committed.keySet());
+                    throw new IllegalArgumentException("Statements refer to variables that are never defined " + missing);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+
+            if(failure.get() != null) throw failure.get();
+            return loaded.get();
+        }
+
+        /**
+         * Add the statement to the current batch if all the statements it refers to are in the batch or committed
+         * @return whether the statement was added
+         */
+        private boolean add(Statement statement){
+            for(String var:statement.refers()){
+                if(!committed.containsKey(var) && !definedInBatch.contains(var)) return false;
+            }
+
+            batch.add(statement);
+            if(statement.defines() != null) definedInBatch.add(statement.defines());
+            if(batch.size() == batchSize) submit();
+            return true;
+        }
+
+        /**
+         * Wait for all batches in flight to be committed, then try adding the statements held back again
+         */
+        private void flushHeldBack(){
+            submit();
+            awaitBatches();
+
+            List<Statement> retry = new ArrayList<>(heldBack);
+            heldBack.clear();
+            for(Statement statement:retry){
+                if(!add(statement)) heldBack.add(statement);
+            }
+            submit();
+            awaitBatches();
+        }
+
+        private void submit(){
+            if(batch.isEmpty()) return;
+            List<Statement> submitted = batch;
+            batch = new ArrayList<>();
+            definedInBatch = new HashSet<>();
+
+            try {
+                batchesInFlight.acquire();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            pool.execute(() -> {
+                try {
+                    commit(submitted);
+                } catch (RuntimeException e){
+                    failure.compareAndSet(null, e);
+                } finally {
+                    batchesInFlight.release();
+                }
+            });
+        }
+
+        private void awaitBatches(){
+            try {
+                batchesInFlight.acquire(threads * 2);
+                batchesInFlight.release(threads * 2);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void commit(List<Statement> statements){
+            List<String> bindings = new ArrayList<>();
+            List<String> texts = new ArrayList<>(statements.size());
+            Set<String> bound = new HashSet<>();
+            for(Statement statement:statements){
+                for(String var:statement.refers()){
+                    ConceptId id = committed.get(var);
+                    if(id != null && bound.add(var)) bindings.add("$" + var + " id \"" + id.getValue() + "\"");
+                }
+                texts.add(statement.text());
+            }
+            String query = insert(bindings, texts);
+
+            for(int attempt = 0; ; attempt++){
+                try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+                    InsertQuery insert = graph.graql().parse(query);
+                    List<Map<String, Concept>> answers = insert.execute();
+                    graph.commit();
+
+                    if(inferenceCache != null){
+                        Set<String> changed = new HashSet<>();
+                        inferenceCache.committed(InferenceCache.changedBy(insert, changed) ? changed : null);
+                    }
+
+                    if(!answers.isEmpty()){
+                        for(Statement statement:statements){
+                            Concept concept = statement.defines() != null ? answers.get(0).get(statement.defines()) : null;
+                            if(concept != null) committed.put(statement.defines(), concept.getId());
+                        }
+                    }
+                    break;
+                } catch (GraknValidationException e){
+                    throw e;
+                } catch (RuntimeException e){
+                    if(attempt == maxRetries) throw e;
+                    backoff(attempt);
+                }
+            }
+
+            loaded.addAndGet(statements.size());
+        }
+    }
+
+    private static void backoff(int attempt){
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS * (attempt + 1));
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
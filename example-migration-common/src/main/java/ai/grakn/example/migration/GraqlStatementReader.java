@@ -0,0 +1,197 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads the statements of a Graql insert query from a reader one at a time, without reading the whole query
+ * into memory. Statements are split on the semicolons outside strings, comments and rule bodies, and the insert
+ * keyword starting the query is dropped.
+ */
+class GraqlStatementReader implements Closeable {
+
+    private final BufferedReader reader;
+    private final StringBuilder statement = new StringBuilder();
+    private boolean started = false;
+
+    GraqlStatementReader(Reader reader){
+        this.reader = new BufferedReader(reader);
+    }
+
+    /**
+     * @return the next statement without its terminating semicolon, or null when there are no more statements
+     */
+    Statement next(){
+        try {
+            statement.setLength(0);
+            int depth = 0;
+            int c;
+            while((c = reader.read()) != -1){
+                if(c == '"' || c == '\''){
+                    readString((char) c);
+                } else if(c == '#'){
+                    reader.readLine();
+                    statement.append('\n');
+                } else if(c == ';' && depth == 0){
+                    String text = statement.toString().trim();
+                    if(!text.isEmpty()) return statement(text);
+                    statement.setLength(0);
+                } else {
+                    if(c == '{') depth++;
+                    if(c == '}') depth--;
+                    statement.append((char) c);
+                }
+            }
+
+            String text = statement.toString().trim();
+            if(text.isEmpty()) return null;
+            if(!started && text.equals("insert")) return null;
+            throw new IllegalArgumentException("Statement is not terminated by a semicolon: " + text);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void readString(char quote) throws IOException {
+        statement.append(quote);
+        int c;
+        while((c = reader.read()) != -1){
+            statement.append((char) c);
+            if(c == '\\'){
+                int escaped = reader.read();
+                if(escaped != -1) statement.append((char) escaped);
+            } else if(c == quote){
+                return;
+            }
+        }
+        throw new IllegalArgumentException("String is not terminated: " + statement);
+    }
+
+    private Statement statement(String text){
+        if(!started){
+            started = true;
+            if(startsWithKeyword(text, "insert")){
+                text = text.substring("insert".length()).trim();
+            } else {
+                throw new IllegalArgumentException("Only insert queries can be read, found: " + text);
+            }
+        } else if(startsWithKeyword(text, "insert") || startsWithKeyword(text, "match")){
+            throw new IllegalArgumentException("Only a single insert query can be read, found: " + text);
+        }
+        return new Statement(text);
+    }
+
+    private static boolean startsWithKeyword(String text, String keyword){
+        return text.startsWith(keyword) && isBoundary(text, keyword.length());
+    }
+
+    private static boolean isBoundary(String text, int index){
+        if(index < 0 || index >= text.length()) return true;
+        char c = text.charAt(index);
+        return !Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '$';
+    }
+
+    @Override
+    public void close(){
+        try {
+            reader.close();
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A single statement along with the variables it defines and refers to
+     */
+    static class Statement {
+        private final String text;
+        private final String defines;
+        private final Set<String> refers = new LinkedHashSet<>();
+
+        Statement(String text){
+            this.text = text;
+
+            boolean isa = false;
+            String first = null;
+            for(int i = 0; i < text.length(); i++){
+                char c = text.charAt(i);
+                if(c == '"' || c == '\''){
+                    i = endOfString(text, i);
+                } else if(c == '$'){
+                    int end = i + 1;
+                    while(end < text.length() && !isBoundary(text, end)) end++;
+                    String var = text.substring(i + 1, end);
+                    if(first == null && i == 0) first = var;
+                    else refers.add(var);
+                    i = end - 1;
+                } else if(text.startsWith("isa", i) && isBoundary(text, i - 1) && isBoundary(text, i + 3)){
+                    isa = true;
+                }
+            }
+
+            // A statement with an isa creates the concept its first variable stands for, any other statement
+            // on that variable adds to a concept created elsewhere
+            if(first != null && !isa) refers.add(first);
+            this.defines = isa ? first : null;
+            if(defines != null) refers.remove(defines);
+        }
+
+        private static int endOfString(String text, int start){
+            char quote = text.charAt(start);
+            for(int i = start + 1; i < text.length(); i++){
+                if(text.charAt(i) == '\\') i++;
+                else if(text.charAt(i) == quote) return i;
+            }
+            return text.length();
+        }
+
+        String text(){
+            return text;
+        }
+
+        /**
+         * @return the variable standing for the concept this statement creates, or null
+         */
+        String defines(){
+            return defines;
+        }
+
+        /**
+         * @return the variables standing for concepts created by other statements
+         */
+        Set<String> refers(){
+            return refers;
+        }
+
+        /**
+         * Whether the statement defines part of the ontology rather than data, i.e. it is about a type label
+         * or it inserts a rule
+         */
+        boolean isOntology(){
+            return !text.startsWith("$") && !text.startsWith("(") ||
+                    text.matches("(?s).*\\bisa\\s+(inference-rule|constraint-rule)\\b.*");
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.concept.Concept;
+import ai.grakn.concept.ConceptId;
+import ai.grakn.concept.Rule;
+import ai.grakn.graql.InsertQuery;
+import ai.grakn.graql.MatchQuery;
+import ai.grakn.graql.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static ai.grakn.graql.Graql.var;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Remembers the answers of match queries run with inference, so that a query asked again is answered without
+ * deriving the inferred relations and resources again.
+ *
+ * Each query depends on the types it mentions and, through the rules that infer them, on the types those rules
+ * match on. The cache keeps a version for every type and resource type. Writers given the cache, such as
+ * {@link TemplateLoader}, {@link MigrationPipeline}, {@link BulkWriter} and {@link GraqlFileLoader}, tell it which
+ * types each transaction changed once it is committed, and forget every answer when they cannot tell. An answer is
+ * worked out again when any type it depends on has changed since, so a delete followed by an insert is seen even
+ * though the number of instances stays the same, and checking an answer is still up to date does not touch the
+ * graph. Other code writing to the graph tells the cache what it changed with {@link #changed(String...)}, or with
+ * {@link #rulesChanged()} when it adds or removes rules; writes the cache is not told about are not seen, so
+ * {@link #invalidate()} should be called after them.
+ *
+ * Answers are kept as concept IDs, since concepts only belong to the transaction they were read in.
+ */
+public class InferenceCache {
+
+    private static final Pattern ISA = Pattern.compile("\\bisa\\s+([\\w-]+)");
+    private static final Pattern HAS = Pattern.compile("\\bhas\\s+([\\w-]+)");
+    private static final Pattern INSERT = Pattern.compile("^(?:.*?\\binsert\\b)?(.*)$", Pattern.DOTALL);
+    private static final String RULE = "inference-rule";
+
+    private final Map<String, Answers> answers = new HashMap<>();
+    private final Map<String, Long> versions = new HashMap<>();
+    private Map<String, String> rules = null;
+    private long hits = 0;
+    private long recomputes = 0;
+    private long invalidations = 0;
+
+    /**
+     * Get the answers of the query with inference turned on, working them out only if the query has not been
+     * asked before or the types it depends on have changed since
+     * @param graph the transaction of the caller, used to work out the answers
+     * @return the ID of the concept for each selected variable, for each answer
+     */
+    public synchronized List<Map<String, ConceptId>> answers(GraknGraph graph, MatchQuery query){
+        String graql = query.toString();
+
+        Answers cached = answers.get(graql);
+        if(cached != null && cached.versions.equals(versions(cached.dependencies))){
+            hits++;
+            return cached.rows;
+        }
+        if(cached != null) invalidations++;
+
+        if(rules == null) rules = rules(graph);
+        Dependencies dependencies = dependencies(graql, rules.values());
+        Map<String, Long> dependencyVersions = versions(dependencies);
+        List<Map<String, ConceptId>> rows = Collections.unmodifiableList(graph.graql().infer(true)
+                .<MatchQuery>parse(graql).stream()
+                .map(InferenceCache::ids)
+                .collect(toList()));
+        recomputes++;
+
+        answers.put(graql, new Answers(rows, dependencies, dependencyVersions));
+        return rows;
+    }
+
+    /**
+     * Record that instances of the given types, or resources of the given resource types, have been inserted,
+     * deleted or changed, so the answers depending on them are worked out again
+     */
+    public synchronized void changed(String... types){
+        changed(Arrays.asList(types));
+    }
+
+    /**
+     * Record that instances of the given types, or resources of the given resource types, have been inserted,
+     * deleted or changed, so the answers depending on them are worked out again. Adding a rule works out every
+     * answer again with the new rules.
+     */
+    public synchronized void changed(Collection<String> types){
+        if(types.contains(RULE)) rulesChanged();
+        for(String type:types) versions.merge(type, 1L, Long::sum);
+    }
+
+    /**
+     * Record what a transaction committed by a writer changed
+     * @param types types and resource types the transaction changed, or null if it is not known what it changed
+     */
+    synchronized void committed(Set<String> types){
+        if(types == null) invalidate();
+        else changed(types);
+    }
+
+    /**
+     * Add the types and resource types the query inserts instances or resources of to the given types
+     * @return whether the changes the query makes are known, which is only the case for insert queries
+     */
+    static boolean changedBy(Query<?> query, Set<String> changed){
+        if(!(query instanceof InsertQuery)) return false;
+
+        Matcher insert = INSERT.matcher(query.toString());
+        if(!insert.matches()) return false;
+        changed.addAll(Dependencies.find(ISA, insert.group(1)));
+        changed.addAll(Dependencies.find(HAS, insert.group(1)));
+        return true;
+    }
+
+    /**
+     * Record that rules have been added or removed, so every answer is worked out again with the new rules
+     */
+    public synchronized void rulesChanged(){
+        rules = null;
+        invalidate();
+    }
+
+    /**
+     * Forget every answer, so each query is worked out again the next time it is asked
+     */
+    public synchronized void invalidate(){
+        invalidations += answers.size();
+        answers.clear();
+    }
+
+    public synchronized int size(){
+        return answers.size();
+    }
+
+    public synchronized long hits(){
+        return hits;
+    }
+
+    public synchronized long recomputes(){
+        return recomputes;
+    }
+
+    public synchronized long invalidations(){
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits, %d recomputes, %d invalidations, %d queries cached",
+                hits, recomputes, invalidations, answers.size());
+    }
+
+    private static Map<String, ConceptId> ids(Map<String, Concept> answer){
+        Map<String, ConceptId> ids = new HashMap<>();
+        answer.forEach((var, concept) -> ids.put(var, concept.getId()));
+        return ids;
+    }
+
+    /**
+     * The body of every inference rule, by ID
+     */
+    private static Map<String, String> rules(GraknGraph graph){
+        Map<String, String> rules = new TreeMap<>();
+        graph.graql().match(var("rule").isa("inference-rule")).get("rule").forEach(concept -> {
+            Rule rule = concept.asRule();
+            rules.put(rule.getId().getValue(), rule.getLHS() + " => " + rule.getRHS());
+        });
+        return rules;
+    }
+
+    /**
+     * Types mentioned by the query, along with the types the rules inferring them match on
+     */
+    private static Dependencies dependencies(String query, Collection<String> rules){
+        Dependencies dependencies = new Dependencies();
+        dependencies.addTypes(query);
+
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(String rule:rules){
+                String[] sides = rule.split(" => ", 2);
+                if(dependencies.mentionedIn(sides[1])) changed |= dependencies.addTypes(sides[0]);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * The current version of each type and resource type the query depends on
+     */
+    private Map<String, Long> versions(Dependencies dependencies){
+        Map<String, Long> current = new HashMap<>();
+        for(String type:dependencies.types) current.put(type, versions.getOrDefault(type, 0L));
+        for(String resource:dependencies.resources) current.put(resource, versions.getOrDefault(resource, 0L));
+        return current;
+    }
+
+    private static class Dependencies {
+        private final Set<String> types = new HashSet<>();
+        private final Set<String> resources = new HashSet<>();
+
+        /**
+         * @return whether any types were added
+         */
+        private boolean addTypes(String graql){
+            return add(ISA, graql, types) | add(HAS, graql, resources);
+        }
+
+        private boolean mentionedIn(String graql){
+            return find(ISA, graql).stream().anyMatch(types::contains) ||
+                    find(HAS, graql).stream().anyMatch(resources::contains);
+        }
+
+        private static boolean add(Pattern pattern, String graql, Set<String> to){
+            return to.addAll(find(pattern, graql));
+        }
+
+        private static List<String> find(Pattern pattern, String graql){
+            List<String> found = new ArrayList<>();
+            Matcher matcher = pattern.matcher(graql);
+            while(matcher.find()) found.add(matcher.group(1));
+            return found;
+        }
+    }
+
+    private static class Answers {
+        private final List<Map<String, ConceptId>> rows;
+        private final Dependencies dependencies;
+        private final Map<String, Long> versions;
+
+        private Answers(List<Map<String, ConceptId>> rows, Dependencies dependencies, Map<String, Long> versions){
+            this.rows = rows;
+            this.dependencies = dependencies;
+            this.versions = versions;
+        }
+    }
+}
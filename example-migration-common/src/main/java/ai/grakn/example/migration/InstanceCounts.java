@@ -0,0 +1,170 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.concept.Concept;
+import ai.grakn.graql.Graql;
+import ai.grakn.graql.MatchQuery;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static ai.grakn.graql.Graql.var;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Keeps count of the instances of some types as they are inserted, so that counting the instances of a type does
+ * not have to go through every one of them.
+ *
+ * A type is counted once when it starts being tracked, after which the count only changes when a writer given
+ * these counts commits queries inserting instances of the type. Counts are only right while every insert of the
+ * tracked types goes through such a writer, and instances are not deleted.
+ *
+ * The subtypes of every type a tracked type belongs to are also read when it starts being tracked, so a count
+ * answered from the kept counts does not query the graph at all. Types added to the ontology afterwards are not
+ * seen, so the types should be tracked once the ontology has been loaded.
+ */
+public class InstanceCounts {
+
+    private static final Pattern ISA_COUNT = Pattern.compile("\\s*match\\s+\\$[\\w-]+\\s+isa\\s+([\\w-]+)\\s*;\\s*(distinct\\s*;\\s*)?");
+    private static final Pattern INSERT = Pattern.compile("^(?:.*?\\binsert\\b)?(.*)$", Pattern.DOTALL);
+    private static final Pattern ISA = Pattern.compile("\\bisa\\s+([\\w-]+)");
+
+    private final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+    // every type that a tracked type is a subtype of, with all of its own subtypes
+    private final Map<String, Set<String>> subTypes = new ConcurrentHashMap<>();
+    private final AtomicLong counted = new AtomicLong();
+    private final AtomicLong executed = new AtomicLong();
+
+    /**
+     * Start keeping count of the instances of the types, counting the instances they have already. Should be
+     * called before anything starts inserting instances of the types.
+     */
+    public InstanceCounts track(GraknGraph graph, String... types){
+        for(String type:types){
+            long existing = graph.graql().match(var("x").isa(type)).distinct().aggregate(Graql.count()).execute();
+            counts.put(type, new AtomicLong(existing));
+
+            graph.graql().match(var().label(type).sub(var("super"))).get("super").forEach(superType ->
+                    subTypes.computeIfAbsent(label(superType), label -> subTypesOf(graph, label)));
+        }
+        return this;
+    }
+
+    private static Set<String> subTypesOf(GraknGraph graph, String type){
+        return graph.graql().match(var("type").sub(type)).get("type").map(InstanceCounts::label).collect(toSet());
+    }
+
+    private static String label(Concept type){
+        return type.asType().getLabel().toString();
+    }
+
+    /**
+     * Count the answers of the query. If the query only asks for the instances of a type, and that type and all
+     * of its subtypes are tracked, the count is worked out from the kept counts, otherwise the query is executed.
+     */
+    public long count(MatchQuery query){
+        Matcher isaCount = ISA_COUNT.matcher(query.toString());
+        Long count = isaCount.matches() ? fromCounts(isaCount.group(1)) : null;
+        if(count != null){
+            counted.incrementAndGet();
+            return count;
+        }
+
+        executed.incrementAndGet();
+        return query.aggregate(Graql.count()).execute();
+    }
+
+    /**
+     * The number of instances of the type and its subtypes, or null if any of them are not tracked
+     */
+    private Long fromCounts(String type){
+        // a type that no tracked type is a subtype of has no tracked subtypes
+        Set<String> all = subTypes.get(type);
+        if(all == null) return null;
+
+        long instances = 0;
+        for(String subType:all){
+            AtomicLong count = counts.get(subType);
+            if(count == null) return null;
+            instances += count.get();
+        }
+        return instances;
+    }
+
+    /**
+     * The kept count of instances of the type, not including its subtypes
+     * @return the count, or null if the type is not tracked
+     */
+    public Long get(String type){
+        AtomicLong count = counts.get(type);
+        return count == null ? null : count.get();
+    }
+
+    /**
+     * Number of counts answered from the kept counts
+     */
+    public long counted(){
+        return counted.get();
+    }
+
+    /**
+     * Number of counts answered by executing the query
+     */
+    public long executed(){
+        return executed.get();
+    }
+
+    /**
+     * Add the instances inserted by a committed transaction to the counts of the types that are tracked
+     * @param inserted number of instances inserted of each type
+     */
+    void committed(Map<String, Long> inserted){
+        inserted.forEach((type, instances) -> {
+            AtomicLong count = counts.get(type);
+            if(count != null) count.addAndGet(instances);
+        });
+    }
+
+    /**
+     * Add the instances the insert query adds each time it is executed to the given counts
+     * @param query insert query, with or without a match
+     * @param times number of times the insert was made, i.e. the number of results of the query
+     */
+    static void inserted(String query, int times, Map<String, Long> inserted){
+        Matcher insert = INSERT.matcher(query);
+        if(!insert.matches()) return;
+
+        Matcher isa = ISA.matcher(insert.group(1));
+        while(isa.find()) inserted.merge(isa.group(1), (long) times, Long::sum);
+    }
+
+    @Override
+    public String toString() {
+        Map<String, Long> current = new HashMap<>();
+        counts.forEach((type, count) -> current.put(type, count.get()));
+        return current + ", " + counted.get() + " counted, " + executed.get() + " executed";
+    }
+}
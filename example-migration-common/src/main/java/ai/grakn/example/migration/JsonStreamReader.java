@@ -0,0 +1,287 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the elements of one array in a JSON document one at a time, without building the rest of the document.
+ *
+ * Values outside the array are skipped character by character, and each element is only built into maps, lists,
+ * strings, numbers and booleans once it is reached, so memory use depends on the size of an element rather than
+ * the size of the document. Null values are left out of objects.
+ */
+class JsonStreamReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder text = new StringBuilder();
+    private int position = 0;
+    private int limit = 0;
+    private boolean end = false;
+    private boolean firstElement = true;
+
+    JsonStreamReader(Reader reader){
+        this.reader = reader;
+    }
+
+    /**
+     * Move to the start of the array found by following the given keys from the top-level object
+     * @param path keys of the objects containing the array, or no keys if the document is the array
+     * @return false if there is no array at that path
+     */
+    boolean seek(String... path) throws IOException {
+        for(String key:path){
+            if(!seekKey(key)) return false;
+        }
+        if(peek() != '[') return false;
+        read();
+        return true;
+    }
+
+    /**
+     * Whether the array found by {@link #seek(String...)} has another element
+     */
+    boolean hasNextElement() throws IOException {
+        int next = peek();
+        return next != ']' && next != -1;
+    }
+
+    /**
+     * Read the next element of the array found by {@link #seek(String...)}
+     * @return the element, which is null if the element is a JSON null
+     */
+    Object nextElement() throws IOException {
+        if(!hasNextElement()) throw new IOException("No more elements in JSON array");
+        if(!firstElement) expect(',');
+        firstElement = false;
+        return readValue();
+    }
+
+    /**
+     * Skip the next element of the array found by {@link #seek(String...)} without building it
+     * @return false if the end of the array had already been reached
+     */
+    boolean skipElement() throws IOException {
+        if(!hasNextElement()) return false;
+        if(!firstElement) expect(',');
+        firstElement = false;
+        skipValue();
+        return true;
+    }
+
+    private boolean seekKey(String key) throws IOException {
+        if(peek() != '{') return false;
+        read();
+        if(peek() == '}') return false;
+        while(true){
+            String name = readString();
+            expect(':');
+            if(name.equals(key)) return true;
+            skipValue();
+            if(peek() == '}') return false;
+            expect(',');
+        }
+    }
+
+    private Object readValue() throws IOException {
+        int next = peek();
+        switch(next){
+            case '{':
+                read();
+                Map<String, Object> object = new LinkedHashMap<>();
+                if(peek() == '}'){
+                    read();
+                    return object;
+                }
+                while(true){
+                    String name = readString();
+                    expect(':');
+                    Object value = readValue();
+                    if(value != null) object.put(name, value);
+                    if(peek() == '}'){
+                        read();
+                        return object;
+                    }
+                    expect(',');
+                }
+            case '[':
+                read();
+                List<Object> array = new ArrayList<>();
+                if(peek() == ']'){
+                    read();
+                    return array;
+                }
+                while(true){
+                    array.add(readValue());
+                    if(peek() == ']'){
+                        read();
+                        return array;
+                    }
+                    expect(',');
+                }
+            case '"':
+                return readString();
+            case 't':
+                readLiteral("true");
+                return true;
+            case 'f':
+                readLiteral("false");
+                return false;
+            case 'n':
+                readLiteral("null");
+                return null;
+            default:
+                return readNumber();
+        }
+    }
+
+    /**
+     * Skip a value without building it
+     */
+    private void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int next = peek();
+            if(next == -1) throw new IOException("Unexpected end of JSON");
+            if(next == '"'){
+                skipString();
+            } else {
+                read();
+                if(next == '{' || next == '[') depth++;
+                else if(next == '}' || next == ']') depth--;
+            }
+
+            // a scalar at the top level ends at the next separator
+            if(depth == 0){
+                int after = peek();
+                if(after == ',' || after == '}' || after == ']' || after == -1) return;
+            }
+        } while(true);
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        text.setLength(0);
+        while(true){
+            int c = readChar();
+            if(c == '"') return text.toString();
+            if(c == '\\'){
+                int escaped = readChar();
+                switch(escaped){
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'u':
+                        int code = 0;
+                        for(int i = 0; i < 4; i++) code = code * 16 + Character.digit(readChar(), 16);
+                        text.append((char) code);
+                        break;
+                    default: text.append((char) escaped);
+                }
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while(true){
+            int c = readChar();
+            if(c == '"') return;
+            if(c == '\\') readChar();
+        }
+    }
+
+    private Object readNumber() throws IOException {
+        text.setLength(0);
+        boolean decimal = false;
+        while(position < limit || fill()){
+            char c = buffer[position];
+            if((c >= '0' && c <= '9') || c == '-' || c == '+'){
+                text.append(c);
+            } else if(c == '.' || c == 'e' || c == 'E'){
+                text.append(c);
+                decimal = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if(text.length() == 0) throw new IOException("Unexpected character in JSON: " + (char) peek());
+        return decimal ? (Object) Double.parseDouble(text.toString()) : (Object) Long.parseLong(text.toString());
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for(int i = 0; i < literal.length(); i++){
+            if(readChar() != literal.charAt(i)) throw new IOException("Expected " + literal + " in JSON");
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = peek();
+        if(c != expected) throw new IOException("Expected '" + expected + "' in JSON but found " + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+        read();
+    }
+
+    /**
+     * The next character that is not whitespace, without consuming it, or -1 at the end of the input
+     */
+    private int peek() throws IOException {
+        while(true){
+            if(position == limit && !fill()) return -1;
+            char c = buffer[position];
+            if(c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            position++;
+        }
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if(c != -1) position++;
+        return c;
+    }
+
+    /**
+     * The next character, including whitespace, failing at the end of the input
+     */
+    private int readChar() throws IOException {
+        if(position == limit && !fill()) throw new IOException("Unexpected end of JSON");
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        if(end) return false;
+        int read = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        end = read == -1;
+        return read > 0;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.concept.Concept;
+import ai.grakn.concept.ConceptId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the key lookups in filled in templates, such as {@code $c isa person has identifier "P12";}, so that
+ * they can be answered from a {@link LookupCache} and the cache can be filled from the concepts queries return.
+ */
+class KeyLookups {
+
+    private static final String VALUE = "(\"(?:[^\"\\\\]|\\\\.)*\"|-?\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?|true|false)";
+
+    private static final Pattern MATCH_INSERT = Pattern.compile("\\s*match\\b(.*?)\\binsert\\b(.*)", Pattern.DOTALL);
+    private static final Pattern LOOKUP = Pattern.compile("\\s*\\$([\\w-]+)\\s+isa\\s+([\\w-]+)\\s+has\\s+([\\w-]+)\\s+" + VALUE + "\\s*;");
+    private static final Pattern KEYED = Pattern.compile("\\$([\\w-]+)\\s+isa\\s+([\\w-]+)((?:\\s*,?\\s*has\\s+[\\w-]+\\s+" + VALUE + ")+)");
+    private static final Pattern HAS = Pattern.compile("has\\s+([\\w-]+)\\s+" + VALUE);
+
+    /**
+     * If every statement in the match of the query is a key lookup known to the cache, rewrite the query as an
+     * insert referring to the looked up concepts by ID. Otherwise return the query unchanged.
+     */
+    static String resolve(String query, LookupCache cache){
+        Matcher matchInsert = MATCH_INSERT.matcher(query);
+        if(!matchInsert.matches()) return query;
+
+        String match = matchInsert.group(1);
+        StringBuilder ids = new StringBuilder();
+        Matcher lookup = LOOKUP.matcher(match);
+        int end = 0;
+        while(!match.substring(end).trim().isEmpty()){
+            lookup.region(end, match.length());
+            if(!lookup.lookingAt()) return query;
+
+            ConceptId id = cache.get(lookup.group(2), lookup.group(3), lookup.group(4));
+            if(id == null) return query;
+
+            ids.append("\n$").append(lookup.group(1)).append(" id \"").append(id.getValue()).append("\";");
+            end = lookup.end();
+        }
+
+        return "insert" + matchInsert.group(2) + ids;
+    }
+
+    /**
+     * Find the keys of the concepts that executing the query returned
+     * @param results the result of executing the query
+     */
+    static List<Resolved> resolved(String query, List<Map<String, Concept>> results){
+        List<Resolved> resolved = new ArrayList<>();
+        if(results.size() != 1) return resolved;
+        Map<String, Concept> result = results.get(0);
+
+        Matcher keyed = KEYED.matcher(query);
+        while(keyed.find()){
+            Concept concept = result.get(keyed.group(1));
+            if(concept == null) continue;
+
+            Matcher has = HAS.matcher(keyed.group(3));
+            while(has.find()){
+                resolved.add(new Resolved(keyed.group(2), has.group(1), has.group(2), concept.getId()));
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * A key whose concept has been found
+     */
+    static class Resolved {
+        private final String type;
+        private final String resource;
+        private final String value;
+        private final ConceptId id;
+
+        private Resolved(String type, String resource, String value, ConceptId id){
+            this.type = type;
+            this.resource = resource;
+            this.value = value;
+            this.id = id;
+        }
+
+        void addTo(LookupCache cache){
+            cache.put(type, resource, value, id);
+        }
+    }
+}
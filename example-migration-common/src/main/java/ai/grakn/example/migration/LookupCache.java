@@ -0,0 +1,156 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.concept.ConceptId;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Remembers which concept was found or inserted for a key, i.e. an instance of a type with a given resource value,
+ * so that templates which look the same key up again can refer to the concept by ID instead of matching it.
+ *
+ * Only the resources declared with {@link #keys(String, String)} are remembered, since only the caller knows which
+ * resources identify a single instance, such as identifiers or codes. Lookups of any other resource are always
+ * left to the graph. Holds at most a fixed number of keys, evicting the least recently used.
+ */
+public class LookupCache {
+
+    private final Map<Key, ConceptId> ids;
+    private final Map<String, Set<String>> keyResources = new HashMap<>();
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxSize maximum number of keys to remember
+     */
+    public LookupCache(int maxSize){
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1, was " + maxSize);
+        }
+        this.ids = new LinkedHashMap<Key, ConceptId>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ConceptId> eldest) {
+                boolean evict = size() > maxSize;
+                if(evict) evictions++;
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Declare that a resource identifies a single instance of a type, so instances can be remembered by its value
+     */
+    public synchronized LookupCache keys(String type, String resource){
+        keyResources.computeIfAbsent(type, t -> new HashSet<>()).add(resource);
+        return this;
+    }
+
+    /**
+     * Whether the resource has been declared as a key of the type
+     */
+    public synchronized boolean isKey(String type, String resource){
+        Set<String> resources = keyResources.get(type);
+        return resources != null && resources.contains(resource);
+    }
+
+    /**
+     * Get the ID of the instance of the type with the given resource value
+     * @param value the value as it is written in Graql
+     * @return the ID of the concept, or null if it is not known or the resource is not a key of the type
+     */
+    public synchronized ConceptId get(String type, String resource, String value){
+        if(!isKey(type, resource)) return null;
+
+        ConceptId id = ids.get(new Key(type, resource, value));
+        if(id == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return id;
+    }
+
+    /**
+     * Remember the ID of the instance of the type with the given resource value, if the resource is a key of the type
+     * @param value the value as it is written in Graql
+     */
+    public synchronized void put(String type, String resource, String value, ConceptId id){
+        if(!isKey(type, resource)) return;
+        ids.put(new Key(type, resource, value), id);
+    }
+
+    public synchronized int size(){
+        return ids.size();
+    }
+
+    public synchronized long hits(){
+        return hits;
+    }
+
+    public synchronized long misses(){
+        return misses;
+    }
+
+    public synchronized long evictions(){
+        return evictions;
+    }
+
+    public synchronized double hitRate(){
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d keys cached",
+                hits, misses, hitRate() * 100, evictions, ids.size());
+    }
+
+    private static class Key {
+        private final String type;
+        private final String resource;
+        private final String value;
+
+        private Key(String type, String resource, String value){
+            this.type = type;
+            this.resource = resource;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return type.equals(key.type) && resource.equals(key.resource) && value.equals(key.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, resource, value);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a CSV or TSV file by memory-mapping it and parsing large chunks of it on several threads at once.
+ *
+ * The file is split into chunks that each start at the beginning of a record, so quoted fields containing
+ * separators or newlines are never split. To find those boundaries without reading the file on one thread,
+ * the quotes in each chunk are counted in parallel first: the number of quotes before a position tells whether
+ * it is inside a quoted field. Each parser thread then reads records from its chunks into a reused buffer of
+ * field offsets, only copying out the fields of a record when it turns them into a row. Rows are handed to the
+ * consumer in batches through a bounded queue, so parsing stops when migration falls behind.
+ *
+ * The first record is the header. Empty fields are left out of the row. Rows from different chunks are not
+ * returned in file order, except when the source is read as a {@link ResumableSource}: then a single thread
+ * parses the chunks in turn and the position of each row is the byte offset of the record that follows it.
+ */
+public class MappedCSVSource implements ResumableSource {
+
+    private static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 1024L * 1024 * 1024;
+    private static final int BOUNDARY_WINDOW = 1024 * 1024;
+    private static final int ROWS_PER_BATCH = 256;
+
+    private final Path file;
+    private byte separator;
+    private byte quote = '"';
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queueSize = 64;
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * @param file CSV file to read, or a TSV file if its name ends in .tsv
+     */
+    public MappedCSVSource(Path file){
+        this.file = file;
+        this.separator = (byte) (file.toString().endsWith(".tsv") ? '\t' : ',');
+    }
+
+    /**
+     * Set the character separating fields, which must be an ASCII character
+     */
+    public MappedCSVSource separator(char separator){
+        this.separator = ascii(separator);
+        return this;
+    }
+
+    /**
+     * Set the character quoting fields, which must be an ASCII character
+     */
+    public MappedCSVSource quote(char quote){
+        this.quote = ascii(quote);
+        return this;
+    }
+
+    /**
+     * Set the number of threads parsing the file
+     */
+    public MappedCSVSource threads(int threads){
+        if(threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Set the number of batches of parsed rows that can wait to be migrated
+     */
+    public MappedCSVSource queueSize(int queueSize){
+        if(queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be at least 1, was " + queueSize);
+        }
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    /**
+     * Set the approximate number of bytes parsed by a thread at a time
+     */
+    public MappedCSVSource chunkSize(long chunkSize){
+        if(chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE + ", was " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Start parsing the file, returning its rows as they are parsed. The stream must be closed, which stops the
+     * parser threads if the stream has not been read to the end.
+     */
+    public Stream<Map<String, Object>> convert(){
+        return parse(null, threads, (row, end) -> row);
+    }
+
+    /**
+     * Read the rows after the given byte offset, in file order on a single parser thread
+     */
+    @Override
+    public Stream<SourceRow> rowsAfter(String position){
+        Long start = position == null ? null : Long.valueOf(position);
+        return parse(start, 1, (row, end) -> new SourceRow(row, Long.toString(end)));
+    }
+
+    /**
+     * @param start offset of the first record to read, or null to read from the record after the header
+     * @param parsers number of threads parsing chunks
+     * @param toItem creates the item returned for a row from the row and the offset of the record after it
+     */
+    private <T> Stream<T> parse(Long start, int parsers, BiFunction<Map<String, Object>, Long, T> toItem){
+        FileChannel channel;
+        List<long[]> chunks;
+        String[] header;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long headerEnd = nextRecordStart(channel, 0, false);
+            header = readHeader(channel, headerEnd);
+            chunks = split(channel, pool, start == null ? headerEnd : start);
+        } catch (IOException e){
+            pool.shutdownNow();
+            close(channel);
+            throw new RuntimeException(e);
+        } catch (RuntimeException e){
+            pool.shutdownNow();
+            close(channel);
+            throw e;
+        }
+
+        RowQueue<T> queue = new RowQueue<>(file.toString(), parsers, queueSize, ROWS_PER_BATCH);
+        AtomicInteger nextChunk = new AtomicInteger();
+        for(int thread = 0; thread < parsers; thread++){
+            int parser = thread;
+            pool.execute(() -> parseChunks(parser, channel, chunks, nextChunk, header, queue, toItem));
+        }
+        pool.shutdown();
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(queue.iterator(), Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    pool.shutdownNow();
+                    close(channel);
+                });
+    }
+
+    /**
+     * Parse chunks until there are none left, then report how fast this thread parsed
+     */
+    private <T> void parseChunks(int parser, FileChannel channel, List<long[]> chunks, AtomicInteger nextChunk,
+                                 String[] header, RowQueue<T> queue, BiFunction<Map<String, Object>, Long, T> toItem){
+        RecordBuffer record = new RecordBuffer();
+        RowQueue<T>.Batch batch = queue.batch();
+        long start = System.nanoTime();
+        long rows = 0;
+        try {
+            for(int chunk = nextChunk.getAndIncrement(); chunk < chunks.size(); chunk = nextChunk.getAndIncrement()){
+                long from = chunks.get(chunk)[0];
+                long to = chunks.get(chunk)[1];
+                if(to - from > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Records between " + from + " and " + to + " are too long to map");
+                }
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                int position = 0;
+                while(position < buffer.limit()){
+                    position = record.read(buffer, position, separator, quote);
+                    if(record.isBlank()) continue;
+
+                    batch.add(toItem.apply(record.toRow(buffer, header, quote), from + position));
+                    rows++;
+                }
+            }
+            batch.flush();
+        } catch (InterruptedException e){
+            // the stream was closed before it was read to the end
+            return;
+        } catch (IOException | RuntimeException e){
+            queue.fail(e);
+        }
+
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.out.println("Parser " + parser + " read " + rows + " rows of " + file.getFileName() + " in " + millis +
+                " ms (" + (rows * 1000 / millis) + " rows/sec)");
+        queue.finished();
+    }
+
+    private String[] readHeader(FileChannel channel, long headerEnd) throws IOException {
+        if(headerEnd > Integer.MAX_VALUE) throw new IllegalStateException("Header of " + file + " is too long to map");
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd);
+        RecordBuffer record = new RecordBuffer();
+        record.read(buffer, 0, separator, quote);
+        String[] header = new String[record.fields];
+        for(int i = 0; i < record.fields; i++){
+            header[i] = record.field(buffer, i, quote).trim();
+        }
+        return header;
+    }
+
+    /**
+     * Split the file after the header into chunks of about the chunk size, each starting at a record
+     */
+    private List<long[]> split(FileChannel channel, ExecutorService pool, long start) throws IOException {
+        long size = channel.size();
+
+        // count the quotes in each chunk in parallel, to know which chunks start inside a quoted field
+        List<Future<Boolean>> oddQuotes = new ArrayList<>();
+        for(long from = start; from < size; from += chunkSize){
+            long chunkFrom = from;
+            long chunkTo = Math.min(size, from + chunkSize);
+            oddQuotes.add(pool.submit(() -> countQuotes(channel, chunkFrom, chunkTo) % 2 == 1));
+        }
+
+        List<long[]> chunks = new ArrayList<>();
+        long chunkStart = start;
+        boolean quoted = false;
+        for(int i = 0; i < oddQuotes.size(); i++){
+            try {
+                quoted ^= oddQuotes.get(i).get();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e){
+                throw new RuntimeException(e.getCause());
+            }
+
+            long boundary = start + (i + 1) * chunkSize;
+            if(boundary >= size) break;
+
+            long recordStart = nextRecordStart(channel, boundary, quoted);
+            if(recordStart > chunkStart){
+                chunks.add(new long[]{chunkStart, recordStart});
+                chunkStart = recordStart;
+            }
+        }
+        if(chunkStart < size) chunks.add(new long[]{chunkStart, size});
+        return chunks;
+    }
+
+    private long countQuotes(FileChannel channel, long from, long to) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        long quotes = 0;
+        for(int i = 0; i < buffer.limit(); i++){
+            if(buffer.get(i) == quote) quotes++;
+        }
+        return quotes;
+    }
+
+    /**
+     * Find the position after the next newline that is not in a quoted field, or the end of the file
+     * @param quoted whether the given position is inside a quoted field
+     */
+    private long nextRecordStart(FileChannel channel, long from, boolean quoted) throws IOException {
+        long size = channel.size();
+        for(long window = from; window < size; window += BOUNDARY_WINDOW){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, window, Math.min(BOUNDARY_WINDOW, size - window));
+            for(int i = 0; i < buffer.limit(); i++){
+                byte b = buffer.get(i);
+                if(b == quote){
+                    quoted = !quoted;
+                } else if(b == '\n' && !quoted){
+                    return window + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    private static byte ascii(char c){
+        if(c > 127) throw new IllegalArgumentException("Character must be ASCII, was " + c);
+        return (byte) c;
+    }
+
+    private static void close(FileChannel channel){
+        try {
+            channel.close();
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The positions of the fields of the last record read, reused for every record a thread reads
+     */
+    private static class RecordBuffer {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private boolean[] escaped = new boolean[16];
+        private int fields;
+        private byte[] scratch = new byte[256];
+
+        /**
+         * Read the record starting at the given position
+         * @return the position of the next record
+         */
+        private int read(MappedByteBuffer buffer, int position, byte separator, byte quote){
+            int limit = buffer.limit();
+            fields = 0;
+            while(true){
+                int start;
+                int end;
+                boolean hasEscapes = false;
+                if(position < limit && buffer.get(position) == quote){
+                    start = ++position;
+                    end = limit;
+                    while(position < limit){
+                        if(buffer.get(position) == quote){
+                            if(position + 1 < limit && buffer.get(position + 1) == quote){
+                                hasEscapes = true;
+                                position += 2;
+                                continue;
+                            }
+                            end = position++;
+                            break;
+                        }
+                        position++;
+                    }
+                    while(position < limit && buffer.get(position) != separator && buffer.get(position) != '\n') position++;
+                } else {
+                    start = position;
+                    while(position < limit && buffer.get(position) != separator && buffer.get(position) != '\n') position++;
+                    end = position;
+                    if(end > start && buffer.get(end - 1) == '\r') end--;
+                }
+                add(start, end, hasEscapes);
+
+                if(position >= limit) return limit;
+                if(buffer.get(position) == '\n') return position + 1;
+                position++;
+            }
+        }
+
+        private boolean isBlank(){
+            return fields == 0 || (fields == 1 && starts[0] == ends[0]);
+        }
+
+        private void add(int start, int end, boolean hasEscapes){
+            if(fields == starts.length){
+                int length = fields * 2;
+                starts = Arrays.copyOf(starts, length);
+                ends = Arrays.copyOf(ends, length);
+                escaped = Arrays.copyOf(escaped, length);
+            }
+            starts[fields] = start;
+            ends[fields] = end;
+            escaped[fields] = hasEscapes;
+            fields++;
+        }
+
+        private Map<String, Object> toRow(MappedByteBuffer buffer, String[] header, byte quote){
+            Map<String, Object> row = new HashMap<>(header.length * 2);
+            for(int i = 0; i < Math.min(fields, header.length); i++){
+                if(starts[i] < ends[i]) row.put(header[i], field(buffer, i, quote));
+            }
+            return row;
+        }
+
+        private String field(MappedByteBuffer buffer, int i, byte quote){
+            int length = ends[i] - starts[i];
+            if(scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+
+            int copied = 0;
+            for(int position = starts[i]; position < ends[i]; position++){
+                byte b = buffer.get(position);
+                scratch[copied++] = b;
+                if(escaped[i] && b == quote) position++;
+            }
+            return new String(scratch, 0, copied, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,508 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknSession;
+import ai.grakn.example.migration.template.CompiledTemplate;
+import ai.grakn.example.migration.template.SinkMacro;
+import ai.grakn.example.migration.template.TemplateCache;
+import ai.grakn.exception.GraknValidationException;
+import ai.grakn.graql.macro.Macro;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Migrates data in three stages running at the same time: reading rows from the source, filling in the template
+ * for each row and committing batches of the resulting queries. The stages are connected by bounded queues, so
+ * a fast stage waits for a slow one rather than filling memory, and the template and write stages each run on
+ * their own pool of threads.
+ *
+ * While migrating, the pipeline regularly prints how many items each stage has handled, its throughput and how
+ * full the queue it feeds is. A stage whose output queue stays full is waiting on the next stage; a stage whose
+ * input queue stays empty is the one holding the pipeline back.
+ *
+ * Rows are written in several transactions at once, so a row must not depend on concepts inserted by another
+ * row of the same migration. Rows that depend on other data should be migrated in a later migration.
+ *
+ * A migration from a {@link ResumableSource} can record its progress in a {@link Checkpoint} file, which is
+ * updated every time a batch is committed. If the migration stops it starts again from the checkpoint when run
+ * with the same file. Because batches are committed in several threads some rows after the checkpoint may already
+ * have been committed; with {@link #replay(boolean)} turned on, each row that is read again up to the furthest
+ * batch committed, and for a few batches after it, is only inserted if its data is not in the graph already.
+ * A migration that is not resuming from a checkpoint with committed rows checks none of its rows.
+ */
+public class MigrationPipeline {
+
+    public static final int BATCH_SIZE = TemplateLoader.BATCH_SIZE;
+    public static final int QUEUE_SIZE = 64;
+    public static final int MAX_RETRIES = BulkWriter.MAX_RETRIES;
+
+    private static final long RETRY_BACKOFF_MILLIS = 50;
+    private static final long QUEUE_POLL_MILLIS = 100;
+    private static final Batch<Object> END = new Batch<>(-1, Collections.emptyList(), null, false, false);
+
+    private final GraknSession session;
+    private final TemplateCache templates = new TemplateCache();
+    private int templateThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int writeThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int batchSize = BATCH_SIZE;
+    private int queueSize = QUEUE_SIZE;
+    private int maxRetries = MAX_RETRIES;
+    private long reportEverySeconds = 10;
+    private LookupCache lookupCache = null;
+    private InstanceCounts instanceCounts = null;
+    private InferenceCache inferenceCache = null;
+    private boolean replay = false;
+
+    private MigrationPipeline(GraknSession session){
+        this.session = session;
+    }
+
+    /**
+     * @param session session bound to the keyspace to migrate data into
+     */
+    public static MigrationPipeline to(GraknSession session){
+        return new MigrationPipeline(session);
+    }
+
+    /**
+     * Register a macro that templates migrated by this pipeline can use
+     */
+    public MigrationPipeline registerMacro(Macro<?> macro){
+        templates.registerMacro(macro);
+        return this;
+    }
+
+    /**
+     * Register a macro writing into a reused sink that templates migrated by this pipeline can use
+     */
+    public MigrationPipeline registerMacro(SinkMacro macro){
+        templates.registerMacro(macro);
+        return this;
+    }
+
+    /**
+     * Set the number of threads filling in templates
+     */
+    public MigrationPipeline templateThreads(int templateThreads){
+        if(templateThreads < 1) {
+            throw new IllegalArgumentException("Number of template threads must be at least 1, was " + templateThreads);
+        }
+        this.templateThreads = templateThreads;
+        return this;
+    }
+
+    /**
+     * Set the number of threads committing batches of queries
+     */
+    public MigrationPipeline writeThreads(int writeThreads){
+        if(writeThreads < 1) {
+            throw new IllegalArgumentException("Number of write threads must be at least 1, was " + writeThreads);
+        }
+        this.writeThreads = writeThreads;
+        return this;
+    }
+
+    /**
+     * Set the number of rows committed in each transaction
+     */
+    public MigrationPipeline batchSize(int batchSize){
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the number of batches each queue between stages can hold
+     */
+    public MigrationPipeline queueSize(int queueSize){
+        if(queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be at least 1, was " + queueSize);
+        }
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    /**
+     * Set the number of times a batch that fails to commit is retried before giving up
+     */
+    public MigrationPipeline maxRetries(int maxRetries){
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Set how often the progress of each stage is printed
+     */
+    public MigrationPipeline reportEvery(long seconds){
+        if(seconds < 1) {
+            throw new IllegalArgumentException("Report interval must be at least 1 second, was " + seconds);
+        }
+        this.reportEverySeconds = seconds;
+        return this;
+    }
+
+    /**
+     * Answer key lookups in templates from the given cache when possible, filling the cache from the concepts
+     * found and inserted during the migration
+     */
+    public MigrationPipeline lookupCache(LookupCache lookupCache){
+        this.lookupCache = lookupCache;
+        return this;
+    }
+
+    /**
+     * Add the instances inserted by the pipeline to the given counts
+     */
+    public MigrationPipeline instanceCounts(InstanceCounts instanceCounts){
+        this.instanceCounts = instanceCounts;
+        return this;
+    }
+
+    /**
+     * Tell the given cache of inferred answers which types the pipeline changed, each time it commits a batch
+     */
+    public MigrationPipeline inferenceCache(InferenceCache inferenceCache){
+        this.inferenceCache = inferenceCache;
+        return this;
+    }
+
+    /**
+     * Skip rows that were already committed when resuming a migration from a checkpoint. Only rows whose queries
+     * are all inserts are skipped, when every pattern they insert can already be matched, so the template should
+     * give each inserted concept a resource identifying it.
+     */
+    public MigrationPipeline replay(boolean replay){
+        this.replay = replay;
+        return this;
+    }
+
+    /**
+     * Migrate the given rows using the template, blocking until they have all been committed
+     * @param template Graql template filled in for each row
+     * @param rows data to migrate, consumed lazily
+     */
+    public void load(String template, Stream<Map<String, Object>> rows){
+        CompiledTemplate compiled = templates.get(template);
+        migrate(rows, compiled::render);
+    }
+
+    /**
+     * Migrate the rows of the source using the template, recording progress in the checkpoint file and starting
+     * after the rows already committed according to it. Blocks until every row has been committed.
+     * @param template Graql template filled in for each row
+     * @param source data to migrate
+     * @param checkpointFile file to read the checkpoint from if it exists and write it to
+     */
+    public void load(String template, ResumableSource source, Path checkpointFile){
+        Checkpoint checkpoint = Checkpoint.in(checkpointFile);
+        if(checkpoint.isComplete()){
+            System.out.println("Already migrated " + checkpoint.rows() + " rows according to " + checkpointFile);
+            return;
+        }
+        if(checkpoint.position() != null){
+            System.out.println("Resuming after " + checkpoint.rows() + " rows at position " + checkpoint.position());
+        }
+        checkpoint.resume();
+
+        // only a resumed migration can have committed rows after its furthest position, and a fresh one has none
+        String furthestPosition = checkpoint.furthestPosition();
+        long replayRows = replay && furthestPosition != null ? (templateThreads + writeThreads) * batchSize : 0;
+
+        CompiledTemplate compiled = templates.get(template);
+        try (Stream<SourceRow> rows = source.rowsAfter(checkpoint.position())) {
+            Batcher<SourceRow> batches = new Batcher<>(rows.iterator(), SourceRow::position, furthestPosition, replayRows);
+            run(batches, row -> compiled.render(row.data()), checkpoint);
+        }
+        checkpoint.completed();
+    }
+
+    /**
+     * Migrate the given items, turning each into Graql queries with the given function on the template threads
+     * and blocking until they have all been committed
+     * @param items data to migrate, consumed lazily
+     * @param toGraql function producing the Graql queries for an item, which must be safe to call from several threads
+     */
+    public <T> void migrate(Stream<T> items, Function<? super T, String> toGraql){
+        run(new Batcher<>(items.iterator(), null, null, 0), toGraql, null);
+    }
+
+    /**
+     * @param checkpoint checkpoint to record committed batches in, or null
+     */
+    private <T> void run(Iterator<Batch<T>> batches, Function<? super T, String> toGraql, Checkpoint checkpoint){
+        BlockingQueue<Batch<T>> rowQueue = new ArrayBlockingQueue<>(queueSize);
+        BlockingQueue<Batch<String>> queryQueue = new ArrayBlockingQueue<>(queueSize);
+        Stage readStage = new Stage("read", rowQueue);
+        Stage templateStage = new Stage("template", queryQueue);
+        Stage writeStage = new Stage("write", null);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService templatePool = Executors.newFixedThreadPool(templateThreads);
+        ExecutorService writePool = Executors.newFixedThreadPool(writeThreads);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> report(readStage, templateStage, writeStage), reportEverySeconds, reportEverySeconds, TimeUnit.SECONDS);
+
+        try {
+            for(int i = 0; i < templateThreads; i++){
+                templatePool.execute(() -> run(failure, () -> expand(rowQueue, queryQueue, toGraql, templateStage, failure)));
+            }
+            for(int i = 0; i < writeThreads; i++){
+                writePool.execute(() -> run(failure, () -> write(queryQueue, checkpoint, writeStage, failure)));
+            }
+
+            // read on this thread, handing the rows over in batches
+            while(batches.hasNext() && failure.get() == null){
+                Batch<T> batch = batches.next();
+                put(rowQueue, batch, failure);
+                readStage.handled(batch.items.size());
+            }
+
+            finish(rowQueue, templatePool, templateThreads, failure);
+            finish(queryQueue, writePool, writeThreads, failure);
+        } catch (InterruptedException e){
+            // interrupted because a stage failed, which is thrown below
+            if(failure.get() == null){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        } finally {
+            templatePool.shutdownNow();
+            writePool.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        Throwable cause = failure.get();
+        if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if(cause != null) throw new RuntimeException(cause);
+
+        report(readStage, templateStage, writeStage);
+    }
+
+    private <T> void expand(BlockingQueue<Batch<T>> rowQueue, BlockingQueue<Batch<String>> queryQueue,
+                            Function<? super T, String> toGraql, Stage stage, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        for(Batch<T> rows = rowQueue.take(); !isEnd(rows); rows = rowQueue.take()){
+            List<String> queries = new ArrayList<>(rows.items.size());
+            for(T row:rows.items){
+                String query = toGraql.apply(row);
+                queries.add(lookupCache != null ? KeyLookups.resolve(query, lookupCache) : query);
+            }
+            put(queryQueue, rows.with(queries), failure);
+            stage.handled(queries.size());
+        }
+    }
+
+    private void write(BlockingQueue<Batch<String>> queryQueue, Checkpoint checkpoint, Stage stage,
+                       AtomicReference<Throwable> failure) throws InterruptedException {
+        for(Batch<String> queries = queryQueue.take(); !isEnd(queries); queries = queryQueue.take()){
+            for(int attempt = 0; ; attempt++){
+                try {
+                    TemplateLoader.commit(session, queries.items, lookupCache, instanceCounts, inferenceCache,
+                            queries.checkExisting);
+                    break;
+                } catch (GraknValidationException e){
+                    throw e;
+                } catch (RuntimeException e){
+                    if(attempt == maxRetries || failure.get() != null) throw e;
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * (attempt + 1));
+                }
+            }
+            if(checkpoint != null){
+                checkpoint.committed(queries.number, queries.lastPosition, queries.items.size(), queries.replayed);
+            }
+            stage.handled(queries.items.size());
+        }
+    }
+
+    /**
+     * Tell every thread of a stage that there is no more input, then wait for them to finish
+     */
+    private static <T> void finish(BlockingQueue<Batch<T>> queue, ExecutorService pool, int threads,
+                                   AtomicReference<Throwable> failure) throws InterruptedException {
+        for(int i = 0; i < threads; i++) put(queue, end(), failure);
+        pool.shutdown();
+        while(!pool.awaitTermination(QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)){
+            if(failure.get() != null) return;
+        }
+    }
+
+    /**
+     * Add to a queue, waiting while it is full unless another stage has failed
+     */
+    private static <T> void put(BlockingQueue<T> queue, T item, AtomicReference<Throwable> failure) throws InterruptedException {
+        while(!queue.offer(item, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)){
+            if(failure.get() != null) throw new InterruptedException("Migration failed");
+        }
+    }
+
+    private static void run(AtomicReference<Throwable> failure, StageTask task){
+        try {
+            task.run();
+        } catch (InterruptedException e){
+            // another stage failed
+        } catch (RuntimeException e){
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Batch<T> end(){
+        return (Batch<T>) END;
+    }
+
+    private static boolean isEnd(Batch<?> batch){
+        return batch == END;
+    }
+
+    private static void report(Stage... stages){
+        StringBuilder report = new StringBuilder();
+        for(Stage stage:stages){
+            if(report.length() > 0) report.append(" | ");
+            report.append(stage);
+        }
+        System.out.println(report);
+    }
+
+    private interface StageTask {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Rows or queries handed between stages, along with what the checkpoint needs to know about them
+     */
+    private static class Batch<T> {
+        private final long number;
+        private final List<T> items;
+        private final String lastPosition;
+        private final boolean checkExisting;
+        private final boolean replayed;
+
+        /**
+         * @param number number of the batch in the order it was read
+         * @param lastPosition position of the last row in the source, or null if the source has no positions
+         * @param checkExisting whether rows may have been committed already, so should be checked before inserting
+         * @param replayed whether the batch is no further than the furthest batch committed before resuming
+         */
+        private Batch(long number, List<T> items, String lastPosition, boolean checkExisting, boolean replayed){
+            this.number = number;
+            this.items = items;
+            this.lastPosition = lastPosition;
+            this.checkExisting = checkExisting;
+            this.replayed = replayed;
+        }
+
+        private <S> Batch<S> with(List<S> items){
+            return new Batch<>(number, items, lastPosition, checkExisting, replayed);
+        }
+    }
+
+    /**
+     * Groups items into numbered batches, working out which of them are read again after resuming
+     */
+    private class Batcher<T> implements Iterator<Batch<T>> {
+        private final Iterator<T> items;
+        private final Function<? super T, String> positionOf;
+        private final String furthestPosition;
+        private boolean pastFurthest;
+        private long replayRows;
+        private long number = 0;
+
+        /**
+         * @param positionOf gives the position of an item in the source, or null if the source has no positions
+         * @param furthestPosition position of the last row of the furthest batch committed before, or null
+         * @param replayRows number of rows after the furthest position that may have been committed already
+         */
+        private Batcher(Iterator<T> items, Function<? super T, String> positionOf, String furthestPosition, long replayRows){
+            this.items = items;
+            this.positionOf = positionOf;
+            this.furthestPosition = furthestPosition;
+            this.pastFurthest = furthestPosition == null;
+            this.replayRows = replayRows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return items.hasNext();
+        }
+
+        @Override
+        public Batch<T> next() {
+            boolean replayed = !pastFurthest;
+            boolean checkExisting = replay && (replayed || replayRows > 0);
+
+            List<T> batch = new ArrayList<>(batchSize);
+            String position = null;
+            while(items.hasNext() && batch.size() < batchSize){
+                T item = items.next();
+                batch.add(item);
+                if(positionOf == null) continue;
+
+                position = positionOf.apply(item);
+                if(pastFurthest) replayRows--;
+                else if(position.equals(furthestPosition)) pastFurthest = true;
+            }
+            return new Batch<>(number++, batch, position, checkExisting, replayed);
+        }
+    }
+
+    /**
+     * Progress of one stage: how many items it has handed on and how full its output queue is
+     */
+    private static class Stage {
+        private final String name;
+        private final BlockingQueue<?> output;
+        private final AtomicLong handled = new AtomicLong();
+        private final long start = System.nanoTime();
+
+        private Stage(String name, BlockingQueue<?> output){
+            this.name = name;
+            this.output = output;
+        }
+
+        private void handled(int items){
+            handled.addAndGet(items);
+        }
+
+        @Override
+        public String toString() {
+            long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            long count = handled.get();
+            String queue = output == null ? "" : ", queue " + output.size() + "/" + (output.size() + output.remainingCapacity());
+            return name + ": " + count + " (" + (count * 1000 / millis) + "/s" + queue + ")";
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.graql.MatchQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static ai.grakn.graql.Graql.var;
+
+/**
+ * The patterns of a match query with parameters, written as {@code <name>} in place of a value, that are parsed once
+ * and can then be matched many times with different values. Each parameter is parsed as a variable, and binding the
+ * query adds a pattern giving that variable its value, so the parsed patterns are shared by every set of values and
+ * values never have to be quoted or escaped. The parsed patterns are kept in a {@link QueryPlanCache}, keyed on the
+ * text with its parameters.
+ *
+ * Modifiers such as {@code select} or {@code distinct} are added to the {@link MatchQuery} returned by {@code bind}.
+ */
+public class PreparedQuery {
+
+    private static final Pattern PARAMETER = Pattern.compile("<([a-zA-Z0-9_-]+)>");
+    private static final String VARIABLE_PREFIX = "param-";
+
+    private final String patterns;
+    private final Set<String> parameters = new LinkedHashSet<>();
+    private final QueryPlanCache plans;
+
+    PreparedQuery(String graql, QueryPlanCache plans){
+        StringBuffer patterns = new StringBuffer();
+        Matcher matcher = PARAMETER.matcher(graql);
+        while(matcher.find()) {
+            parameters.add(matcher.group(1));
+            matcher.appendReplacement(patterns, Matcher.quoteReplacement("$" + variable(matcher.group(1))));
+        }
+        matcher.appendTail(patterns);
+
+        this.patterns = patterns.toString();
+        this.plans = plans;
+    }
+
+    /**
+     * Give each parameter its value and bind the query to the graph, ready to be executed
+     * @param values value of each parameter, by name
+     */
+    public MatchQuery bind(GraknGraph graph, Map<String, Object> values){
+        if(!values.keySet().equals(parameters)) {
+            throw new IllegalArgumentException("Query has parameters " + parameters + ", was given " + values.keySet());
+        }
+
+        List<ai.grakn.graql.Pattern> bound = new ArrayList<>(plans.patterns(patterns));
+        for(String parameter:parameters) {
+            bound.add(var(variable(parameter)).val(values.get(parameter)));
+        }
+        return graph.graql().match(bound);
+    }
+
+    /**
+     * Give the only parameter its value and bind the query to the graph, ready to be executed
+     */
+    public MatchQuery bind(GraknGraph graph, String name, Object value){
+        return bind(graph, Collections.singletonMap(name, value));
+    }
+
+    /**
+     * The variable a parameter is parsed as, prefixed so it does not clash with a variable of the query itself
+     */
+    private static String variable(String parameter){
+        return VARIABLE_PREFIX + parameter;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.graql.Graql;
+import ai.grakn.graql.Pattern;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps parsed Graql patterns, keyed on their text, so that the patterns of a {@link PreparedQuery} are parsed once
+ * however many different values the query is asked with. One cache can be shared by every thread and transaction of
+ * a session, since patterns are only bound to a graph when a query built from them is executed.
+ *
+ * Holds at most a fixed number of pattern lists, evicting the least recently used.
+ */
+public class QueryPlanCache {
+
+    private final Map<String, List<Pattern>> queries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxSize maximum number of pattern lists to keep
+     */
+    public QueryPlanCache(int maxSize){
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1, was " + maxSize);
+        }
+        this.queries = new LinkedHashMap<String, List<Pattern>>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Pattern>> eldest) {
+                boolean evict = size() > maxSize;
+                if(evict) evictions++;
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Prepare the patterns of a match query with parameters, written as {@code <name>} in place of a value
+     */
+    public PreparedQuery prepare(String graql){
+        return new PreparedQuery(graql, this);
+    }
+
+    /**
+     * Get the patterns, parsing them if they are not in the cache
+     * @return the patterns, not bound to any graph
+     */
+    public List<Pattern> patterns(String graql){
+        synchronized (this) {
+            List<Pattern> patterns = queries.get(graql);
+            if(patterns != null) {
+                hits++;
+                return patterns;
+            }
+            misses++;
+        }
+
+        // parse outside the lock, so threads asking for different patterns do not wait on each other
+        List<Pattern> patterns = Collections.unmodifiableList(Graql.withoutGraph().parsePatterns(graql));
+        synchronized (this) {
+            queries.put(graql, patterns);
+        }
+        return patterns;
+    }
+
+    public synchronized int size(){
+        return queries.size();
+    }
+
+    public synchronized long hits(){
+        return hits;
+    }
+
+    public synchronized long misses(){
+        return misses;
+    }
+
+    public synchronized long evictions(){
+        return evictions;
+    }
+
+    public synchronized double hitRate(){
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d pattern lists cached",
+                hits, misses, hitRate() * 100, evictions, queries.size());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.concept.ConceptId;
+import ai.grakn.concept.Resource;
+import ai.grakn.concept.ResourceType;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers the resources returned by {@link ResourceType#putResource(Object)}, so that putting a value that
+ * has been seen before does not look the value up in the resource index of the graph.
+ *
+ * Within a transaction, putting a value put before in the same transaction returns the same resource from a map
+ * without going to the graph at all. A value put by an earlier transaction that has been committed is fetched by
+ * its concept ID, which is a direct lookup rather than a search of the index by value.
+ *
+ * One cache can be shared by all the transactions of a session. Resources created by a transaction are only seen
+ * by that transaction until {@link #committed()} is called on its thread, which shares their IDs with every other
+ * transaction, and are forgotten by {@link #rolledBack()} without ever having been shared.
+ * Holds the IDs of at most a fixed number of values, evicting the least recently used.
+ */
+public class ResourceCache {
+
+    private final Map<Key, ConceptId> ids;
+    private final ThreadLocal<Map<Key, Resource<?>>> uncommitted = ThreadLocal.withInitial(HashMap::new);
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxSize maximum number of resource values to remember
+     */
+    public ResourceCache(int maxSize){
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1, was " + maxSize);
+        }
+        this.ids = new LinkedHashMap<Key, ConceptId>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ConceptId> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the resource of the given type with the given value, creating it if it does not exist
+     * @param graph the transaction the resource is used in
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Resource<V> putResource(GraknGraph graph, ResourceType<V> type, V value){
+        Key key = new Key(type.getId(), value);
+        Map<Key, Resource<?>> resources = uncommitted.get();
+
+        Resource<V> resource = (Resource<V>) resources.get(key);
+        if(resource == null){
+            ConceptId id;
+            synchronized (this) {
+                id = ids.get(key);
+            }
+            if(id != null) resource = graph.getConcept(id);
+        }
+
+        if(resource != null){
+            synchronized (this) {
+                hits++;
+            }
+        } else {
+            resource = type.putResource(value);
+            synchronized (this) {
+                misses++;
+            }
+        }
+        resources.put(key, resource);
+        return resource;
+    }
+
+    /**
+     * Share the resources put by the transaction on this thread with other transactions, as it has been committed
+     */
+    public void committed(){
+        Map<Key, Resource<?>> resources = uncommitted.get();
+        synchronized (this) {
+            resources.forEach((key, resource) -> ids.put(key, resource.getId()));
+        }
+        resources.clear();
+    }
+
+    /**
+     * Forget the resources put by the transaction on this thread, as it was not committed
+     */
+    public void rolledBack(){
+        uncommitted.get().clear();
+    }
+
+    public synchronized long hits(){
+        return hits;
+    }
+
+    public synchronized long misses(){
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d values cached",
+                hits, misses, lookups == 0 ? 0 : 100.0 * hits / lookups, ids.size());
+    }
+
+    private static class Key {
+        private final ConceptId type;
+        private final Object value;
+
+        private Key(ConceptId type, Object value){
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return type.equals(key.type) && value.equals(key.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, value);
+        }
+    }
+}
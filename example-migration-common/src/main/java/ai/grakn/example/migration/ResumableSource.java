@@ -0,0 +1,34 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.util.stream.Stream;
+
+/**
+ * A source of rows that can be read again from part way through, so that a migration which stopped can carry on
+ * from where it got to. Rows must be returned in the same order every time the source is read.
+ */
+public interface ResumableSource {
+
+    /**
+     * Read the rows that come after the given position, in order. The stream must be closed.
+     * @param position position of the last row that does not need to be read, or null to read every row
+     */
+    Stream<SourceRow> rowsAfter(String position);
+}
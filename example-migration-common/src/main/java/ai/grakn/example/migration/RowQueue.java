@@ -0,0 +1,147 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands rows parsed on several threads to a single consumer in batches, through a queue holding a bounded
+ * number of batches. Producers block when the queue is full, so parsing never gets far ahead of migration.
+ *
+ * @param <T> type of the rows
+ */
+class RowQueue<T> {
+
+    private static final List<Object> END = Collections.emptyList();
+
+    private final String source;
+    private final int producers;
+    private final int batchSize;
+    private final BlockingQueue<List<T>> queue;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param source description of where the rows come from, used in errors
+     * @param producers number of threads adding rows, each of which must call {@link #finished()}
+     * @param queueSize maximum number of batches waiting to be consumed
+     * @param batchSize number of rows in each batch
+     */
+    RowQueue(String source, int producers, int queueSize, int batchSize){
+        this.source = source;
+        this.producers = producers;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    /**
+     * A buffer for the rows of one producer thread
+     */
+    Batch batch(){
+        return new Batch();
+    }
+
+    /**
+     * Record that a producer failed, which fails the consumer once the other producers have finished
+     */
+    void fail(Throwable cause){
+        failure.compareAndSet(null, cause);
+    }
+
+    /**
+     * Record that a producer has added all its rows
+     */
+    void finished(){
+        try {
+            queue.put(end());
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The rows added by all producers, blocking until more are available
+     */
+    Iterator<T> iterator(){
+        return new Iterator<T>() {
+            private Iterator<T> batch = Collections.emptyIterator();
+            private int finished = 0;
+
+            @Override
+            public boolean hasNext() {
+                while(!batch.hasNext() && finished < producers){
+                    List<T> next;
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e){
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException(e);
+                    }
+                    if(next == END){
+                        finished++;
+                    } else {
+                        batch = next.iterator();
+                    }
+                }
+                if(failure.get() != null) throw new RuntimeException("Failed to read " + source, failure.get());
+                return batch.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                return batch.next();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> end(){
+        return (List<T>) END;
+    }
+
+    class Batch {
+        private List<T> rows = new ArrayList<>(batchSize);
+
+        /**
+         * Add a row, handing the batch to the consumer once it is full
+         * @throws InterruptedException if the consumer has stopped reading
+         */
+        void add(T row) throws InterruptedException {
+            rows.add(row);
+            if(rows.size() == batchSize) flush();
+        }
+
+        /**
+         * Hand any rows added so far to the consumer
+         * @throws InterruptedException if the consumer has stopped reading
+         */
+        void flush() throws InterruptedException {
+            if(rows.isEmpty()) return;
+            queue.put(rows);
+            rows = new ArrayList<>(batchSize);
+        }
+    }
+}
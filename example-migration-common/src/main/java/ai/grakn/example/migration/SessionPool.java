@@ -0,0 +1,406 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.Grakn;
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static ai.grakn.graql.Graql.var;
+
+/**
+ * Keeps a warm session open for each keyspace so short operations don't pay for setting up a session and
+ * bootstrapping the keyspace every time, and bounds the number of transactions open on each keyspace at once.
+ *
+ * A session that has not been used for a while is checked with a small query before it is used again. If the check
+ * fails the session is replaced, unless it is still in use: a session with open transactions, or one handed out
+ * with {@link #session(String)}, is kept and only the failure is counted. The check runs on a thread of the pool,
+ * because Grakn transactions are bound to the thread that opened them and the calling thread may already have a
+ * transaction open on the session. Sessions without open transactions are closed once they have been idle for
+ * longer than the idle timeout, unless they were handed out with {@link #session(String)}.
+ */
+public class SessionPool implements AutoCloseable {
+
+    public static final int MAX_TRANSACTIONS = Runtime.getRuntime().availableProcessors() * 2;
+    public static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final long HEALTH_CHECK_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final String uri;
+    private final Map<String, Pooled> pooled = new HashMap<>();
+    private ScheduledExecutorService evictor = null;
+    private volatile ExecutorService checker = null;
+    private int maxTransactions = MAX_TRANSACTIONS;
+    private long idleTimeoutMillis = IDLE_TIMEOUT_MILLIS;
+    private long healthCheckAfterMillis = HEALTH_CHECK_AFTER_MILLIS;
+
+    private long transactions = 0;
+    private long waitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long busyNanos = 0;
+    private long evictedCapacityNanos = 0;
+    private int inUse = 0;
+    private int peakInUse = 0;
+    private long sessionsOpened = 0;
+    private long evictions = 0;
+    private long failedHealthChecks = 0;
+
+    /**
+     * @param uri location of the Grakn engine the sessions connect to
+     */
+    public SessionPool(String uri){
+        this.uri = uri;
+    }
+
+    /**
+     * Set the number of transactions that can be open on each keyspace at once, applied to keyspaces first used
+     * after it is set
+     */
+    public synchronized SessionPool maxTransactions(int maxTransactions){
+        if(maxTransactions < 1) {
+            throw new IllegalArgumentException("Number of transactions must be at least 1, was " + maxTransactions);
+        }
+        this.maxTransactions = maxTransactions;
+        return this;
+    }
+
+    /**
+     * Set how long a session can go without open transactions before it is closed
+     */
+    public synchronized SessionPool idleTimeout(long millis){
+        if(millis < 1) {
+            throw new IllegalArgumentException("Idle timeout must be at least 1 ms, was " + millis);
+        }
+        this.idleTimeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * Set how long a session can go unused before it is checked again before being used
+     */
+    public synchronized SessionPool healthCheckAfter(long millis){
+        this.healthCheckAfterMillis = millis;
+        return this;
+    }
+
+    /**
+     * Get the warm session of the keyspace, for code that opens its own transactions. A session handed out this
+     * way is kept open until the pool is closed and the caller must not close it.
+     */
+    public GraknSession session(String keyspace){
+        Pooled keyspacePool = lease(keyspace);
+        try {
+            return keyspacePool.pin(this);
+        } finally {
+            release(keyspacePool, 0);
+        }
+    }
+
+    /**
+     * Open a transaction on the keyspace, waiting while the maximum number of transactions are already open on it.
+     * Closing the returned transaction closes the graph and hands its place back to the pool.
+     */
+    public Transaction open(String keyspace, GraknTxType type){
+        Pooled keyspacePool = lease(keyspace);
+
+        long start = System.nanoTime();
+        try {
+            keyspacePool.permits.acquire();
+        } catch (InterruptedException e){
+            release(keyspacePool, 0);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        long waited = System.nanoTime() - start;
+
+        try {
+            GraknGraph graph = keyspacePool.open(this, type);
+            acquired(waited);
+            return new Transaction(this, keyspacePool, graph);
+        } catch (RuntimeException e){
+            keyspacePool.permits.release();
+            release(keyspacePool, 0);
+            throw e;
+        }
+    }
+
+    /**
+     * Close the sessions that have had no open transactions for longer than the idle timeout
+     * @return the number of sessions closed
+     */
+    public synchronized int evictIdle(){
+        long now = System.nanoTime();
+        int evicted = 0;
+        Iterator<Pooled> iterator = pooled.values().iterator();
+        while(iterator.hasNext()){
+            Pooled keyspacePool = iterator.next();
+            if(keyspacePool.leases == 0 && !keyspacePool.pinned &&
+                    TimeUnit.NANOSECONDS.toMillis(now - keyspacePool.lastUsed) > idleTimeoutMillis){
+                iterator.remove();
+                evictedCapacityNanos += keyspacePool.capacityNanos(now);
+                keyspacePool.closeSession();
+                evicted++;
+            }
+        }
+        evictions += evicted;
+        return evicted;
+    }
+
+    private synchronized Pooled lease(String keyspace){
+        if(evictor == null) start();
+        Pooled keyspacePool = pooled.computeIfAbsent(keyspace, k -> new Pooled(k, maxTransactions));
+        keyspacePool.leases++;
+        return keyspacePool;
+    }
+
+    private synchronized void release(Pooled keyspacePool, long busy){
+        keyspacePool.leases--;
+        keyspacePool.lastUsed = System.nanoTime();
+        if(busy > 0){
+            busyNanos += busy;
+            inUse--;
+        }
+    }
+
+    private synchronized void acquired(long waited){
+        transactions++;
+        waitNanos += waited;
+        maxWaitNanos = Math.max(maxWaitNanos, waited);
+        inUse++;
+        peakInUse = Math.max(peakInUse, inUse);
+    }
+
+    private synchronized GraknSession newSession(String keyspace){
+        sessionsOpened++;
+        return Grakn.session(uri, keyspace);
+    }
+
+    private synchronized void failedHealthCheck(){
+        failedHealthChecks++;
+    }
+
+    private void start(){
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "session-pool-evictor"));
+        long period = Math.max(1, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        checker = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "session-pool-health-check"));
+    }
+
+    private static Thread daemon(Runnable runnable, String name){
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @Override
+    public synchronized void close(){
+        if(evictor != null) evictor.shutdownNow();
+        if(checker != null) checker.shutdownNow();
+        evictor = null;
+        checker = null;
+        pooled.values().forEach(Pooled::closeSession);
+        pooled.clear();
+    }
+
+    public synchronized long transactions(){
+        return transactions;
+    }
+
+    public synchronized double averageWaitMillis(){
+        return transactions == 0 ? 0 : waitNanos / 1e6 / transactions;
+    }
+
+    public synchronized double maxWaitMillis(){
+        return maxWaitNanos / 1e6;
+    }
+
+    public synchronized int peakInUse(){
+        return peakInUse;
+    }
+
+    /**
+     * The share of the transaction capacity of the pool that was in use, over the time each keyspace was pooled
+     */
+    public synchronized double utilisation(){
+        long now = System.nanoTime();
+        long capacity = evictedCapacityNanos;
+        for(Pooled keyspacePool:pooled.values()) capacity += keyspacePool.capacityNanos(now);
+        return capacity == 0 ? 0 : (double) busyNanos / capacity;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d transactions, %.1f ms average wait, %.1f ms max wait, %d peak in use, " +
+                        "%.1f%% utilisation, %d sessions opened, %d evicted, %d failed health checks",
+                transactions, averageWaitMillis(), maxWaitMillis(), peakInUse, utilisation() * 100,
+                sessionsOpened, evictions, failedHealthChecks);
+    }
+
+    /**
+     * A transaction opened from the pool
+     */
+    public static class Transaction implements AutoCloseable {
+        private final SessionPool pool;
+        private final Pooled keyspacePool;
+        private final GraknGraph graph;
+        private final long opened = System.nanoTime();
+        private boolean closed = false;
+
+        private Transaction(SessionPool pool, Pooled keyspacePool, GraknGraph graph){
+            this.pool = pool;
+            this.keyspacePool = keyspacePool;
+            this.graph = graph;
+        }
+
+        public GraknGraph graph(){
+            return graph;
+        }
+
+        @Override
+        public void close(){
+            if(closed) return;
+            closed = true;
+            try {
+                graph.close();
+            } finally {
+                keyspacePool.closed();
+                keyspacePool.permits.release();
+                pool.release(keyspacePool, Math.max(1, System.nanoTime() - opened));
+            }
+        }
+    }
+
+    /**
+     * The session of a keyspace along with the transactions open on it
+     */
+    private static class Pooled {
+        private final String keyspace;
+        private final int maxTransactions;
+        private final Semaphore permits;
+        private final long created = System.nanoTime();
+        private GraknSession session = null;
+        private long lastChecked = System.nanoTime();
+        private long lastUsed = System.nanoTime();
+        private int leases = 0;
+        private int openTransactions = 0;
+        private boolean pinned = false;
+
+        private Pooled(String keyspace, int maxTransactions){
+            this.keyspace = keyspace;
+            this.maxTransactions = maxTransactions;
+            this.permits = new Semaphore(maxTransactions, true);
+        }
+
+        /**
+         * Get the session to hand out to a caller, after which it is never replaced
+         */
+        private synchronized GraknSession pin(SessionPool pool){
+            GraknSession healthy = healthy(pool);
+            pinned = true;
+            return healthy;
+        }
+
+        /**
+         * Open a transaction on the session, counting it as open from before it is opened until it is closed
+         */
+        private GraknGraph open(SessionPool pool, GraknTxType type){
+            GraknSession healthy;
+            synchronized (this) {
+                healthy = healthy(pool);
+                openTransactions++;
+            }
+            try {
+                return healthy.open(type);
+            } catch (RuntimeException e){
+                closed();
+                throw e;
+            }
+        }
+
+        private synchronized void closed(){
+            openTransactions--;
+        }
+
+        /**
+         * Get the session, opening it the first time and checking it again when it has not been used for a while.
+         * A session that fails the check is only replaced if nothing is using it, since closing it would break the
+         * transactions open on it and the callers it was handed out to.
+         */
+        private synchronized GraknSession healthy(SessionPool pool){
+            long now = System.nanoTime();
+            if(session == null){
+                session = pool.newSession(keyspace);
+            } else if(TimeUnit.NANOSECONDS.toMillis(now - lastChecked) > pool.healthCheckAfterMillis && !check(pool)){
+                pool.failedHealthCheck();
+                if(openTransactions == 0 && !pinned){
+                    closeSession();
+                    session = pool.newSession(keyspace);
+                }
+            }
+            lastChecked = now;
+            return session;
+        }
+
+        /**
+         * Ask a small query on the session from the pool's own thread, so it never shares a thread with a
+         * transaction the caller already has open
+         */
+        private boolean check(SessionPool pool){
+            GraknSession checked = session;
+            try {
+                return pool.checker.submit(() -> {
+                    try (GraknGraph graph = checked.open(GraknTxType.READ)) {
+                        return graph.graql().match(var("x").label("entity")).ask().execute();
+                    } catch (RuntimeException e){
+                        return false;
+                    }
+                }).get();
+            } catch (ExecutionException e){
+                return false;
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        private synchronized void closeSession(){
+            if(session == null) return;
+            try {
+                session.close();
+            } catch (RuntimeException e){
+                // the session is being thrown away, so it failing to close cleanly doesn't matter
+            }
+            session = null;
+        }
+
+        private long capacityNanos(long now){
+            return (now - created) * maxTransactions;
+        }
+    }
+}
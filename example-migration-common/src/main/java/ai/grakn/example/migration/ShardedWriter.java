@@ -0,0 +1,418 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.concept.ConceptId;
+import ai.grakn.concept.Entity;
+import ai.grakn.concept.Resource;
+import ai.grakn.exception.GraknValidationException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes entities with resources for many threads at once without their transactions fighting over the same
+ * resource values.
+ *
+ * Every resource value belongs to one of a fixed number of shards, picked by a hash of its type and value, and each
+ * shard commits its writes in batches on a single thread. So a popular value such as a common surname is only ever
+ * put by one transaction at a time, and asking for a value that is already being put waits for that put instead of
+ * putting it again. Entities are spread over the shards in turn, so entities sharing a popular value do not all queue
+ * behind the shard of that value, and each is written once all its resources exist and attached to them by ID.
+ *
+ * Writes are made with {@link #entity(String, Map)} from any thread, and {@link #close()} waits for them all.
+ */
+public class ShardedWriter implements AutoCloseable {
+
+    public static final int SHARDS = Runtime.getRuntime().availableProcessors();
+    public static final int BATCH_SIZE = 100;
+    public static final int MAX_RETRIES = BulkWriter.MAX_RETRIES;
+    public static final int MAX_VALUES = 100000;
+
+    private static final long BATCH_WAIT_MILLIS = 5;
+    private static final long RETRY_BACKOFF_MILLIS = 50;
+
+    private final GraknSession session;
+    private int shardCount = SHARDS;
+    private int batchSize = BATCH_SIZE;
+    private int maxRetries = MAX_RETRIES;
+    private int maxValues = MAX_VALUES;
+    private InferenceCache inferenceCache = null;
+
+    private Shard[] shards = null;
+    private Semaphore pending = null;
+    private boolean closed = false;
+    private final AtomicInteger nextEntityShard = new AtomicInteger();
+
+    private final AtomicLong resourcesPut = new AtomicLong();
+    private final AtomicLong valuesShared = new AtomicLong();
+    private final AtomicLong entitiesWritten = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    private ShardedWriter(GraknSession session){
+        this.session = session;
+    }
+
+    /**
+     * @param session session bound to the keyspace to write to
+     */
+    public static ShardedWriter to(GraknSession session){
+        return new ShardedWriter(session);
+    }
+
+    /**
+     * Set the number of shards, each committing on its own thread, by default the number of available processors
+     */
+    public ShardedWriter shards(int shards){
+        if(shards < 1) {
+            throw new IllegalArgumentException("Number of shards must be at least 1, was " + shards);
+        }
+        checkNotStarted();
+        this.shardCount = shards;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of writes committed by a shard in each transaction
+     */
+    public ShardedWriter batchSize(int batchSize){
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        }
+        checkNotStarted();
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the number of times a batch that fails to commit is retried before giving up
+     */
+    public ShardedWriter maxRetries(int maxRetries){
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Set the number of resource values each shard remembers the ID of, evicting the least recently used
+     */
+    public ShardedWriter maxValues(int maxValues){
+        if(maxValues < 1) {
+            throw new IllegalArgumentException("Number of values must be at least 1, was " + maxValues);
+        }
+        checkNotStarted();
+        this.maxValues = maxValues;
+        return this;
+    }
+
+    /**
+     * Tell the given cache of inferred answers which types each committed batch changed
+     */
+    public ShardedWriter inferenceCache(InferenceCache inferenceCache){
+        checkNotStarted();
+        this.inferenceCache = inferenceCache;
+        return this;
+    }
+
+    /**
+     * Add an entity with the given resources, blocking while too many writes are waiting to be committed
+     * @param type entity type of the new entity
+     * @param resources values of the resources of the entity, by resource type
+     * @return the ID of the entity, once it has been committed
+     * @throws IllegalStateException if the writer has been closed
+     */
+    public CompletableFuture<ConceptId> entity(String type, Map<String, Object> resources){
+        Shard[] shards = start();
+        try {
+            pending.acquire();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        Map<String, CompletableFuture<ConceptId>> resourceIds = new LinkedHashMap<>();
+        for(Map.Entry<String, Object> resource:resources.entrySet()){
+            Key key = new Key(resource.getKey(), resource.getValue());
+            resourceIds.put(resource.getKey(), shards[key.shard(shards.length)].resource(key));
+        }
+        Shard home = shards[Math.floorMod(nextEntityShard.getAndIncrement(), shards.length)];
+
+        CompletableFuture<ConceptId> entity = CompletableFuture
+                .allOf(resourceIds.values().toArray(new CompletableFuture[resourceIds.size()]))
+                .thenCompose(allPut -> {
+                    Map<String, ConceptId> ids = new LinkedHashMap<>();
+                    resourceIds.forEach((resourceType, id) -> ids.put(resourceType, id.join()));
+                    return home.entity(type, ids);
+                });
+        entity.whenComplete((id, failure) -> pending.release());
+        return entity;
+    }
+
+    private synchronized Shard[] start(){
+        if(closed) throw new IllegalStateException("The writer has been closed");
+        if(shards == null){
+            pending = new Semaphore(shardCount * batchSize * 4);
+            shards = new Shard[shardCount];
+            for(int i = 0; i < shardCount; i++){
+                shards[i] = new Shard(i);
+                shards[i].start();
+            }
+        }
+        return shards;
+    }
+
+    private synchronized void checkNotStarted(){
+        if(shards != null || closed) throw new IllegalStateException("The writer has already started writing");
+    }
+
+    /**
+     * Wait for all the writes made so far to be committed and stop the shards. The writer cannot be used again.
+     */
+    @Override
+    public void close(){
+        Shard[] started;
+        synchronized (this) {
+            started = shards;
+            shards = null;
+            closed = true;
+        }
+        if(started == null) return;
+
+        try {
+            pending.acquire(shardCount * batchSize * 4);
+            for(Shard shard:started) shard.interrupt();
+            for(Shard shard:started) shard.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long resourcesPut(){
+        return resourcesPut.get();
+    }
+
+    /**
+     * The number of times a resource value was asked for while it was already put or being put
+     */
+    public long valuesShared(){
+        return valuesShared.get();
+    }
+
+    public long entitiesWritten(){
+        return entitiesWritten.get();
+    }
+
+    public long retries(){
+        return retries.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entities, %d resources put, %d values shared, %d batches, %d retried batches",
+                entitiesWritten.get(), resourcesPut.get(), valuesShared.get(), batches.get(), retries.get());
+    }
+
+    private static void backoff(int attempt){
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS * (attempt + 1));
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A single thread committing the writes of the resource values belonging to it, and of the entities given to it
+     * in turn
+     */
+    private class Shard extends Thread {
+        private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+        private final Map<Key, CompletableFuture<ConceptId>> values;
+
+        private Shard(int number){
+            super("sharded-writer-" + number);
+            setDaemon(true);
+            this.values = new LinkedHashMap<Key, CompletableFuture<ConceptId>>(16, 0.75f, true){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<ConceptId>> eldest) {
+                    return size() > maxValues && eldest.getValue().isDone();
+                }
+            };
+        }
+
+        /**
+         * Get the ID of the resource with the key, putting it unless it is already put or being put
+         */
+        private CompletableFuture<ConceptId> resource(Key key){
+            CompletableFuture<ConceptId> id;
+            synchronized (values) {
+                id = values.get(key);
+                if(id != null && !id.isCompletedExceptionally()){
+                    valuesShared.incrementAndGet();
+                    return id;
+                }
+                id = new CompletableFuture<>();
+                values.put(key, id);
+            }
+            queue.add(new Write(key, null, null, id));
+            return id;
+        }
+
+        private CompletableFuture<ConceptId> entity(String type, Map<String, ConceptId> resources){
+            CompletableFuture<ConceptId> id = new CompletableFuture<>();
+            queue.add(new Write(null, type, resources, id));
+            return id;
+        }
+
+        @Override
+        public void run(){
+            List<Write> batch = new ArrayList<>(batchSize);
+            while(true){
+                try {
+                    Write first = queue.take();
+                    batch.add(first);
+                    // give other writers a moment to add to the batch, so one transaction commits many writes
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WAIT_MILLIS);
+                    while(batch.size() < batchSize){
+                        Write next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if(next == null) break;
+                        batch.add(next);
+                    }
+                } catch (InterruptedException e){
+                    // closed, by which time every write has been committed
+                    if(batch.isEmpty() && queue.isEmpty()) return;
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+
+                commit(batch);
+                batch.clear();
+            }
+        }
+
+        private void commit(List<Write> batch){
+            List<ConceptId> ids = new ArrayList<>(batch.size());
+            for(int attempt = 0; ; attempt++){
+                ids.clear();
+                try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+                    for(Write write:batch) ids.add(write.write(graph));
+                    graph.commit();
+                    break;
+                } catch (RuntimeException e){
+                    if(e instanceof GraknValidationException || attempt == maxRetries){
+                        batch.forEach(write -> write.id.completeExceptionally(e));
+                        return;
+                    }
+                    retries.incrementAndGet();
+                    backoff(attempt);
+                }
+            }
+
+            batches.incrementAndGet();
+            if(inferenceCache != null){
+                Set<String> changed = new HashSet<>();
+                for(Write write:batch){
+                    if(write.key != null){
+                        changed.add(write.key.type);
+                    } else {
+                        // attaching the resources changes which entities have them
+                        changed.add(write.entityType);
+                        changed.addAll(write.resources.keySet());
+                    }
+                }
+                inferenceCache.committed(changed);
+            }
+            for(int i = 0; i < batch.size(); i++){
+                Write write = batch.get(i);
+                if(write.key != null) resourcesPut.incrementAndGet();
+                else entitiesWritten.incrementAndGet();
+                write.id.complete(ids.get(i));
+            }
+        }
+    }
+
+    /**
+     * Either a resource to put or an entity to add, along with the ID it completes once committed
+     */
+    private static class Write {
+        private final Key key;
+        private final String entityType;
+        private final Map<String, ConceptId> resources;
+        private final CompletableFuture<ConceptId> id;
+
+        private Write(Key key, String entityType, Map<String, ConceptId> resources, CompletableFuture<ConceptId> id){
+            this.key = key;
+            this.entityType = entityType;
+            this.resources = resources;
+            this.id = id;
+        }
+
+        private ConceptId write(GraknGraph graph){
+            if(key != null){
+                return graph.getResourceType(key.type).putResource(key.value).getId();
+            }
+
+            Entity entity = graph.getEntityType(entityType).addEntity();
+            resources.values().forEach(resource -> entity.resource(graph.<Resource<?>>getConcept(resource)));
+            return entity.getId();
+        }
+    }
+
+    private static class Key {
+        private final String type;
+        private final Object value;
+
+        private Key(String type, Object value){
+            this.type = type;
+            this.value = value;
+        }
+
+        private int shard(int shards){
+            return Math.floorMod(hashCode(), shards);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return type.equals(key.type) && value.equals(key.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, value);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.util.Map;
+
+/**
+ * A row read from a {@link ResumableSource}, along with its position in the source
+ */
+public class SourceRow {
+
+    private final Map<String, Object> data;
+    private final String position;
+
+    public SourceRow(Map<String, Object> data, String position){
+        this.data = data;
+        this.position = position;
+    }
+
+    public Map<String, Object> data(){
+        return data;
+    }
+
+    /**
+     * Position of this row in the source, which can be passed to {@link ResumableSource#rowsAfter(String)} to read
+     * the rows that follow it
+     */
+    public String position(){
+        return position;
+    }
+}
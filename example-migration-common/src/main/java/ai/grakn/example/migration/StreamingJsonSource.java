@@ -0,0 +1,196 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the elements of an array in JSON files as rows, one element at a time, so that files holding very large
+ * arrays can be migrated without reading a whole file into memory.
+ *
+ * Each file is decoded from a file channel through a fixed size buffer and only the elements of the array at
+ * the given path are built, so memory use depends on the size of an element rather than the size of a file.
+ * When given a directory, the files in it are read on several threads at once and their elements are handed to
+ * the consumer through a bounded queue. Elements must be JSON objects. Elements from different files are not
+ * returned in any particular order, except when the source is read as a {@link ResumableSource}: then the files
+ * are read one after another in order of name, and the position of each element is the name of its file and its
+ * index in the array, as in {@code trending1.json#41}.
+ */
+public class StreamingJsonSource implements ResumableSource {
+
+    private static final int DECODER_BUFFER_SIZE = 64 * 1024;
+    private static final int ROWS_PER_BATCH = 64;
+
+    private final Path path;
+    private final String[] arrayPath;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queueSize = 64;
+
+    /**
+     * @param path JSON file, or directory of JSON files, to read
+     * @param arrayPath keys leading from the top-level object to the array to read, separated by dots, such as
+     *                  data or response.items. An empty path reads a document that is itself an array.
+     */
+    public StreamingJsonSource(Path path, String arrayPath){
+        this.path = path;
+        this.arrayPath = arrayPath.isEmpty() ? new String[0] : arrayPath.split("\\.");
+    }
+
+    /**
+     * Set the number of files read at the same time
+     */
+    public StreamingJsonSource threads(int threads){
+        if(threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Set the number of batches of elements that can wait to be migrated
+     */
+    public StreamingJsonSource queueSize(int queueSize){
+        if(queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be at least 1, was " + queueSize);
+        }
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    /**
+     * Start reading the files, returning the elements of the array as they are read. The stream must be closed,
+     * which stops the reading threads if the stream has not been read to the end.
+     */
+    public Stream<Map<String, Object>> convert(){
+        List<Path> files = files();
+        return read(files, Math.max(1, Math.min(threads, files.size())), null, -1, (file, index, element) -> element);
+    }
+
+    /**
+     * Read the elements after the given position, reading the files in order on a single thread
+     */
+    @Override
+    public Stream<SourceRow> rowsAfter(String position){
+        List<Path> files = files();
+        String startFile = null;
+        long skip = -1;
+        if(position != null){
+            int separator = position.lastIndexOf('#');
+            String name = position.substring(0, separator);
+            startFile = name;
+            skip = Long.parseLong(position.substring(separator + 1));
+            files.removeIf(file -> file.getFileName().toString().compareTo(name) < 0);
+        }
+        return read(files, 1, startFile, skip,
+                (file, index, element) -> new SourceRow(element, file.getFileName() + "#" + index));
+    }
+
+    /**
+     * @param startFile name of the file in which to skip elements, or null
+     * @param skip index of the last element to skip in the start file
+     * @param toItem creates the item returned for an element from its file, index and contents
+     */
+    private <T> Stream<T> read(List<Path> files, int readers, String startFile, long skip, ElementReader<T> toItem){
+        RowQueue<T> queue = new RowQueue<>(path.toString(), readers, queueSize, ROWS_PER_BATCH);
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+        AtomicInteger nextFile = new AtomicInteger();
+        for(int thread = 0; thread < readers; thread++){
+            pool.execute(() -> {
+                RowQueue<T>.Batch batch = queue.batch();
+                try {
+                    for(int file = nextFile.getAndIncrement(); file < files.size(); file = nextFile.getAndIncrement()){
+                        Path next = files.get(file);
+                        read(next, next.getFileName().toString().equals(startFile) ? skip : -1, batch, toItem);
+                    }
+                    batch.flush();
+                } catch (InterruptedException e){
+                    // the stream was closed before it was read to the end
+                    return;
+                } catch (IOException | RuntimeException e){
+                    queue.fail(e);
+                }
+                queue.finished();
+            });
+        }
+        pool.shutdown();
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(queue.iterator(), Spliterator.NONNULL), false)
+                .onClose(pool::shutdownNow);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void read(Path file, long skip, RowQueue<T>.Batch batch, ElementReader<T> toItem)
+            throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), DECODER_BUFFER_SIZE)) {
+
+            JsonStreamReader json = new JsonStreamReader(reader);
+            if(!json.seek(arrayPath)) {
+                throw new IllegalArgumentException("No array at " + String.join(".", arrayPath) + " in " + file);
+            }
+
+            long index = 0;
+            for(; index <= skip && json.skipElement(); index++);
+
+            for(; json.hasNextElement(); index++){
+                Object element = json.nextElement();
+                if(!(element instanceof Map)) {
+                    throw new IllegalArgumentException("Elements of " + String.join(".", arrayPath) + " in " + file + " must be objects");
+                }
+                batch.add(toItem.create(file, index, (Map<String, Object>) element));
+            }
+        }
+    }
+
+    private List<Path> files(){
+        if(!Files.isDirectory(path)) return new ArrayList<>(Collections.singletonList(path));
+        try (Stream<Path> children = Files.list(path)) {
+            return children.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                    .collect(Collectors.toList());
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private interface ElementReader<T> {
+        T create(Path file, long index, Map<String, Object> element);
+    }
+}
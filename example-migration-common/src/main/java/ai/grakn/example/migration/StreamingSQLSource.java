@@ -0,0 +1,267 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the results of a SQL query a few rows at a time, so that the rows can be migrated without
+ * holding the whole result set in memory.
+ *
+ * By default rows are read through a single cursor using the configured fetch size. On MySQL, whose driver
+ * otherwise reads the whole result set before returning the first row, the driver's streaming mode is used.
+ * If a key column is given the query is instead read in pages ordered by that column, each page starting
+ * after the last key seen, so no cursor is held open for the whole migration.
+ *
+ * When read as a {@link ResumableSource} the position of a row is its key if a key column is given, so a resumed
+ * read starts directly after that key. Without a key column the position is the number of rows read so far and a
+ * resumed read skips that many rows, so the query must have an {@code ORDER BY} on columns that together identify
+ * each row. Otherwise the database may return the rows in a different order and the skipped rows need not be the
+ * ones that were read before.
+ *
+ * Columns of a row are looked up ignoring case, because databases differ in the case of the labels they return.
+ * H2 and Oracle upper-case unquoted names and PostgreSQL lower-cases them, so a template asking for {@code <Code>}
+ * finds the {@code code} column whichever database the row was read from. Values of columns read as character
+ * large objects, such as the {@code text} columns of H2, are read into strings.
+ */
+public class StreamingSQLSource implements ResumableSource {
+
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private final String query;
+    private final Connection connection;
+    private final boolean mySQL;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private String keyColumn = null;
+    private int pageSize;
+
+    /**
+     * @param query SQL query to read rows from
+     * @param connection jdbc connection to the SQL database
+     */
+    public StreamingSQLSource(String query, Connection connection){
+        this.query = query.trim().replaceAll(";$", "");
+        this.connection = connection;
+        try {
+            this.mySQL = connection.getMetaData().getDatabaseProductName().equalsIgnoreCase("MySQL");
+        } catch (SQLException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Set the number of rows the driver should fetch from the database at a time
+     */
+    public StreamingSQLSource fetchSize(int fetchSize){
+        if(fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be at least 1, was " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Read the query in pages ordered by the given unique column
+     * @param keyColumn column that uniquely identifies each row returned by the query
+     * @param pageSize number of rows to read in each page
+     */
+    public StreamingSQLSource keyset(String keyColumn, int pageSize){
+        if(pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1, was " + pageSize);
+        }
+        this.keyColumn = keyColumn;
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Rows of the query, read lazily as the stream is consumed. The stream should be closed once it has
+     * been consumed to release the database cursor.
+     */
+    public Stream<Map<String, Object>> convert(){
+        RowIterator rows = new RowIterator(null, 0);
+        return stream(rows).onClose(rows::close);
+    }
+
+    /**
+     * Rows of the query after the given position, read lazily as the stream is consumed
+     */
+    @Override
+    public Stream<SourceRow> rowsAfter(String position){
+        RowIterator rows = keyColumn != null ?
+                new RowIterator(position, 0) :
+                new RowIterator(null, position == null ? 0 : Long.parseLong(position));
+
+        Iterator<SourceRow> positioned = new Iterator<SourceRow>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public SourceRow next() {
+                Map<String, Object> row = rows.next();
+                return new SourceRow(row, keyColumn != null ? String.valueOf(rows.lastKey) : Long.toString(rows.rowsRead));
+            }
+        };
+        return stream(positioned).onClose(rows::close);
+    }
+
+    private static <T> Stream<T> stream(Iterator<T> iterator){
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private PreparedStatement prepare(Object lastKey) throws SQLException {
+        String sql = query;
+        if(keyColumn != null){
+            sql = "SELECT * FROM (" + query + ") page" +
+                    (lastKey != null ? " WHERE " + keyColumn + " > ?" : "") +
+                    " ORDER BY " + keyColumn + " LIMIT " + pageSize;
+        }
+
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(mySQL ? Integer.MIN_VALUE : fetchSize);
+        if(lastKey != null){
+            statement.setObject(1, lastKey);
+        }
+        return statement;
+    }
+
+    private static Map<String, Object> read(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Map<String, Object> row = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for(int i = 1; i <= metaData.getColumnCount(); i++){
+            row.put(metaData.getColumnLabel(i), value(resultSet.getObject(i)));
+        }
+        return row;
+    }
+
+    /**
+     * The value read from a column, with character large objects read into strings so they can still be used once
+     * the result set has moved on
+     */
+    private static Object value(Object value) throws SQLException {
+        if(value instanceof Clob){
+            Clob clob = (Clob) value;
+            return clob.getSubString(1, (int) clob.length());
+        }
+        return value;
+    }
+
+    /**
+     * Iterates over the rows of the query, moving on to the next page when keyset pagination is used
+     */
+    private class RowIterator implements Iterator<Map<String, Object>>, AutoCloseable {
+        private PreparedStatement statement = null;
+        private ResultSet resultSet = null;
+        private Map<String, Object> next = null;
+        private Object lastKey;
+        private long skip;
+        private long rowsRead = 0;
+        private int rowsInPage = 0;
+        private boolean exhausted = false;
+
+        /**
+         * @param lastKey key to start reading after when keyset pagination is used, or null to start from the first row
+         * @param skip number of rows to skip before the first row returned
+         */
+        private RowIterator(Object lastKey, long skip){
+            this.lastKey = lastKey;
+            this.skip = skip;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if(next != null) return true;
+            if(exhausted) return false;
+
+            try {
+                if(resultSet == null) open();
+
+                while(true) {
+                    boolean found = resultSet.next();
+                    if(!found && keyColumn != null && rowsInPage == pageSize){
+                        open();
+                        found = resultSet.next();
+                    }
+                    if(!found) return finish();
+
+                    rowsInPage++;
+                    rowsRead++;
+                    if(keyColumn != null) lastKey = value(resultSet.getObject(keyColumn));
+                    if(skip == 0) break;
+                    skip--;
+                }
+
+                next = read(resultSet);
+                return true;
+            } catch (SQLException e){
+                close();
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if(!hasNext()) throw new NoSuchElementException();
+            Map<String, Object> row = next;
+            next = null;
+            return row;
+        }
+
+        private void open() throws SQLException {
+            close();
+            statement = prepare(lastKey);
+            resultSet = statement.executeQuery();
+            rowsInPage = 0;
+        }
+
+        private boolean finish(){
+            exhausted = true;
+            close();
+            return false;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if(resultSet != null) resultSet.close();
+                if(statement != null) statement.close();
+            } catch (SQLException e){
+                throw new RuntimeException(e);
+            } finally {
+                resultSet = null;
+                statement = null;
+            }
+        }
+    }
+}
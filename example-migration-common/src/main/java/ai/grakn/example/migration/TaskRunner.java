@@ -0,0 +1,197 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs independent tasks, such as transactions writing to a graph, at the same time and hands back their results
+ * in the order they complete.
+ *
+ * Tasks run either on a fixed pool of platform threads or on a thread of their own. A thread per task suits tasks
+ * that spend most of their time waiting on the engine. It uses virtual threads when the JVM has them (Java 21 and
+ * later), and otherwise a cached pool of platform threads. In both modes a semaphore bounds the number of tasks
+ * running at once, so a burst of tasks cannot start an unbounded number of threads.
+ */
+public class TaskRunner implements AutoCloseable {
+
+    public enum Mode {
+        PLATFORM_POOL, THREAD_PER_TASK
+    }
+
+    private final Mode mode;
+    private final int maxConcurrent;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private TaskRunner(Mode mode, int maxConcurrent){
+        if(maxConcurrent < 1) {
+            throw new IllegalArgumentException("Number of concurrent tasks must be at least 1, was " + maxConcurrent);
+        }
+        this.mode = mode;
+        this.maxConcurrent = maxConcurrent;
+
+        ExecutorService virtual = mode == Mode.THREAD_PER_TASK ? virtualThreadPerTaskExecutor() : null;
+        this.virtualThreads = virtual != null;
+        if(virtual != null){
+            executor = virtual;
+        } else if(mode == Mode.THREAD_PER_TASK){
+            executor = Executors.newCachedThreadPool();
+        } else {
+            executor = Executors.newFixedThreadPool(maxConcurrent);
+        }
+    }
+
+    /**
+     * Run tasks on a fixed pool of platform threads
+     */
+    public static TaskRunner platformPool(int threads){
+        return new TaskRunner(Mode.PLATFORM_POOL, threads);
+    }
+
+    /**
+     * Run each task on a thread of its own, with at most the given number of tasks running at once
+     */
+    public static TaskRunner threadPerTask(int maxConcurrent){
+        return new TaskRunner(Mode.THREAD_PER_TASK, maxConcurrent);
+    }
+
+    public static TaskRunner of(Mode mode, int maxConcurrent){
+        return new TaskRunner(mode, maxConcurrent);
+    }
+
+    public Mode mode(){
+        return mode;
+    }
+
+    /**
+     * Whether tasks are run on virtual threads
+     */
+    public boolean virtualThreads(){
+        return virtualThreads;
+    }
+
+    /**
+     * Run all the tasks, handing each result to the consumer on the calling thread as soon as its task completes.
+     * No more tasks are started after one has failed, and the failure is thrown once the running tasks are done.
+     * @return the number of tasks run
+     */
+    public <T> long run(Stream<? extends Callable<? extends T>> tasks, Consumer<? super T> results){
+        return run(tasks.iterator(), results);
+    }
+
+    /**
+     * Run all the tasks, handing each result to the consumer on the calling thread as soon as its task completes.
+     * No more tasks are started after one has failed, and the failure is thrown once the running tasks are done.
+     * @return the number of tasks run
+     */
+    public <T> long run(Iterator<? extends Callable<? extends T>> tasks, Consumer<? super T> results){
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Semaphore running = new Semaphore(maxConcurrent);
+        RuntimeException failure = null;
+        long submitted = 0;
+        long completed = 0;
+
+        try {
+            while(tasks.hasNext() && failure == null){
+                Callable<? extends T> task = tasks.next();
+                running.acquire();
+                completion.submit(() -> {
+                    try {
+                        return task.call();
+                    } finally {
+                        running.release();
+                    }
+                });
+                submitted++;
+
+                for(Future<T> done = completion.poll(); done != null; done = completion.poll()){
+                    failure = collect(done, results, failure);
+                    completed++;
+                }
+            }
+
+            while(completed < submitted){
+                failure = collect(completion.take(), results, failure);
+                completed++;
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if(failure != null) throw failure;
+        return completed;
+    }
+
+    private static <T> RuntimeException collect(Future<T> done, Consumer<? super T> results, RuntimeException failure)
+            throws InterruptedException {
+        try {
+            T result = done.get();
+            if(failure == null) results.accept(result);
+            return failure;
+        } catch (ExecutionException e){
+            if(failure != null) return failure;
+            Throwable cause = e.getCause();
+            return cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() when running on a JVM with virtual threads, otherwise null
+     */
+    private static ExecutorService virtualThreadPerTaskExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e){
+            return null;
+        }
+    }
+
+    @Override
+    public void close(){
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        String threads = mode == Mode.PLATFORM_POOL ? "pool of platform threads" :
+                virtualThreads ? "virtual thread per task" : "platform thread per task";
+        return threads + ", at most " + maxConcurrent + " at once";
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.concept.Concept;
+import ai.grakn.example.migration.template.CompiledTemplate;
+import ai.grakn.example.migration.template.SinkMacro;
+import ai.grakn.example.migration.template.TemplateCache;
+import ai.grakn.graql.InsertQuery;
+import ai.grakn.graql.MatchQuery;
+import ai.grakn.graql.Query;
+import ai.grakn.graql.macro.Macro;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Migrates data into a graph by filling in a Graql template for each row and committing the resulting
+ * queries in batches. Templates are compiled once and reused for every row.
+ */
+public class TemplateLoader {
+
+    public static final int BATCH_SIZE = 25;
+
+    private final GraknSession session;
+    private final TemplateCache templates = new TemplateCache();
+    private int batchSize = BATCH_SIZE;
+    private LookupCache lookupCache = null;
+    private InstanceCounts instanceCounts = null;
+    private InferenceCache inferenceCache = null;
+
+    private TemplateLoader(GraknSession session){
+        this.session = session;
+    }
+
+    /**
+     * @param session session bound to the keyspace to migrate data into
+     */
+    public static TemplateLoader to(GraknSession session){
+        return new TemplateLoader(session);
+    }
+
+    /**
+     * Register a macro that templates loaded by this loader can use
+     */
+    public TemplateLoader registerMacro(Macro<?> macro){
+        templates.registerMacro(macro);
+        return this;
+    }
+
+    /**
+     * Register a macro writing into a reused sink that templates loaded by this loader can use
+     */
+    public TemplateLoader registerMacro(SinkMacro macro){
+        templates.registerMacro(macro);
+        return this;
+    }
+
+    /**
+     * Set the number of rows committed in each transaction
+     */
+    public TemplateLoader batchSize(int batchSize){
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Answer key lookups in templates from the given cache when possible, filling the cache from the concepts
+     * found and inserted during the migration
+     */
+    public TemplateLoader lookupCache(LookupCache lookupCache){
+        this.lookupCache = lookupCache;
+        return this;
+    }
+
+    /**
+     * Add the instances inserted by the loader to the given counts
+     */
+    public TemplateLoader instanceCounts(InstanceCounts instanceCounts){
+        this.instanceCounts = instanceCounts;
+        return this;
+    }
+
+    /**
+     * Tell the given cache of inferred answers which types the loader changed, each time it commits
+     */
+    public TemplateLoader inferenceCache(InferenceCache inferenceCache){
+        this.inferenceCache = inferenceCache;
+        return this;
+    }
+
+    /**
+     * Migrate the given rows using the template
+     * @param template Graql template filled in for each row
+     * @param rows data to migrate, consumed lazily
+     */
+    public void load(String template, Stream<Map<String, Object>> rows){
+        CompiledTemplate compiled = templates.get(template);
+
+        List<String> batch = new ArrayList<>(batchSize);
+        Iterator<Map<String, Object>> iterator = rows.iterator();
+        while(iterator.hasNext()){
+            String query = compiled.render(iterator.next());
+            batch.add(lookupCache != null ? KeyLookups.resolve(query, lookupCache) : query);
+            if(batch.size() == batchSize){
+                commit(session, batch, lookupCache, instanceCounts, inferenceCache, false);
+                batch.clear();
+            }
+        }
+        if(!batch.isEmpty()) commit(session, batch, lookupCache, instanceCounts, inferenceCache, false);
+    }
+
+    /**
+     * Execute the queries in one transaction, adding the keys they looked up or inserted to the lookup cache
+     * and the instances they inserted to the instance counts once the transaction has been committed, and telling
+     * the inference cache which types they changed
+     * @param lookupCache cache to add keys to, or null
+     * @param instanceCounts counts to add inserted instances to, or null
+     * @param inferenceCache cache of inferred answers to tell about the types changed, or null
+     * @param skipCommitted skip each row whose queries are all inserts of data already in the graph, so rows
+     *                      committed before a migration was stopped are not inserted twice when it is resumed
+     */
+    @SuppressWarnings("unchecked")
+    static void commit(GraknSession session, List<String> queries, LookupCache lookupCache,
+                       InstanceCounts instanceCounts, InferenceCache inferenceCache, boolean skipCommitted){
+        List<KeyLookups.Resolved> resolved = new ArrayList<>();
+        Map<String, Long> inserted = new HashMap<>();
+        Set<String> changed = new HashSet<>();
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            for(String query:queries){
+                List<Query<?>> parsedQueries = graph.graql().parseList(query);
+                if(skipCommitted && alreadyCommitted(graph, parsedQueries)) continue;
+
+                for(Query<?> parsed:parsedQueries){
+                    Object result = parsed.execute();
+                    if(lookupCache != null && result instanceof List){
+                        resolved.addAll(KeyLookups.resolved(query, (List<Map<String, Concept>>) result));
+                    }
+                    if(instanceCounts != null && parsed instanceof InsertQuery){
+                        InstanceCounts.inserted(parsed.toString(), ((List<?>) result).size(), inserted);
+                    }
+                    if(changed != null && !InferenceCache.changedBy(parsed, changed)) changed = null;
+                }
+            }
+            graph.commit();
+        }
+        resolved.forEach(key -> key.addTo(lookupCache));
+        if(instanceCounts != null) instanceCounts.committed(inserted);
+        if(inferenceCache != null) inferenceCache.committed(changed);
+    }
+
+    /**
+     * Whether every query is an insert whose patterns can all be matched in the graph already
+     */
+    private static boolean alreadyCommitted(GraknGraph graph, List<Query<?>> queries){
+        for(Query<?> query:queries){
+            if(!(query instanceof InsertQuery)) return false;
+            String match = asMatch(query.toString());
+            if(match == null || !graph.graql().<MatchQuery>parse(match).ask().execute()) return false;
+        }
+        return !queries.isEmpty();
+    }
+
+    /**
+     * Turn an insert query into a match query on the same patterns, by replacing the insert keyword with match or,
+     * if the insert already follows a match, removing it
+     * @return the match query, or null if the query has no insert keyword
+     */
+    static String asMatch(String insert){
+        boolean quoted = false;
+        for(int i = 0; i < insert.length(); i++){
+            char c = insert.charAt(i);
+            if(c == '\\' && quoted){
+                i++;
+            } else if(c == '"'){
+                quoted = !quoted;
+            } else if(!quoted && insert.startsWith("insert", i) && isBoundary(insert, i - 1) && isBoundary(insert, i + 6)){
+                String before = insert.substring(0, i);
+                String after = insert.substring(i + 6);
+                return before.trim().isEmpty() ? "match" + after : before + after;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBoundary(String query, int index){
+        if(index < 0 || index >= query.length()) return true;
+        char c = query.charAt(index);
+        return !Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '$';
+    }
+}
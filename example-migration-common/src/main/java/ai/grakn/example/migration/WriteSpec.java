@@ -0,0 +1,120 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.concept.ConceptId;
+import ai.grakn.concept.Entity;
+import ai.grakn.concept.Instance;
+import ai.grakn.concept.Relation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A write to make to a graph, such as adding an entity with its resources. Written by a {@link BulkWriter},
+ * possibly more than once if its batch has to be retried, so it should not have side effects outside the graph.
+ */
+@FunctionalInterface
+public interface WriteSpec {
+
+    void write(GraknGraph graph);
+
+    /**
+     * The types and resource types this write adds or changes instances or resources of, or null if they are not
+     * known
+     */
+    default Set<String> types(){
+        return null;
+    }
+
+    /**
+     * A write that only adds or changes instances or resources of the given types and resource types
+     */
+    static WriteSpec of(Collection<String> types, WriteSpec write){
+        Set<String> written = Collections.unmodifiableSet(new HashSet<>(types));
+        return new WriteSpec() {
+            @Override
+            public void write(GraknGraph graph) {
+                write.write(graph);
+            }
+
+            @Override
+            public Set<String> types() {
+                return written;
+            }
+        };
+    }
+
+    /**
+     * Add an entity with the given resources
+     * @param type entity type of the new entity
+     * @param resources values of the resources of the entity, by resource type
+     */
+    static WriteSpec entity(String type, Map<String, Object> resources){
+        Set<String> types = new HashSet<>(resources.keySet());
+        types.add(type);
+        return of(types, graph -> {
+            Entity entity = graph.getEntityType(type).addEntity();
+            resources.forEach((resourceType, value) ->
+                    entity.resource(graph.getResourceType(resourceType).putResource(value)));
+        });
+    }
+
+    /**
+     * Add an entity with the given resources, getting resource values that have been seen before from a cache
+     * @param type entity type of the new entity
+     * @param resources values of the resources of the entity, by resource type
+     * @param cache cache of resource values, which must also be given to the {@link BulkWriter}
+     */
+    static WriteSpec entity(String type, Map<String, Object> resources, ResourceCache cache){
+        Set<String> types = new HashSet<>(resources.keySet());
+        types.add(type);
+        return of(types, graph -> {
+            Entity entity = graph.getEntityType(type).addEntity();
+            resources.forEach((resourceType, value) ->
+                    entity.resource(cache.putResource(graph, graph.getResourceType(resourceType), value)));
+        });
+    }
+
+    /**
+     * Add a resource, if it does not already exist
+     */
+    static WriteSpec resource(String type, Object value){
+        return of(Collections.singleton(type), graph -> graph.getResourceType(type).putResource(value));
+    }
+
+    /**
+     * Add a relation between existing instances
+     * @param type relation type of the new relation
+     * @param rolePlayers IDs of the instances in the relation, by the role they play
+     */
+    static WriteSpec relation(String type, Map<String, ConceptId> rolePlayers){
+        return of(Collections.singleton(type), graph -> {
+            Relation relation = graph.getRelationType(type).addRelation();
+            rolePlayers.forEach((role, id) -> {
+                Instance rolePlayer = graph.getConcept(id);
+                relation.addRolePlayer(graph.getRoleType(role), rolePlayer);
+            });
+        });
+    }
+}
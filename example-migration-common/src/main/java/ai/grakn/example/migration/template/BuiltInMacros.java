@@ -0,0 +1,53 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * The macros Graql templates can use without registering them
+ */
+class BuiltInMacros {
+
+    private static final Map<String, Function<List<Object>, ?>> MACROS = new HashMap<>();
+
+    static {
+        MACROS.put("noescp", values -> new Node.Unescaped(String.valueOf(values.get(0))));
+        MACROS.put("string", values -> String.valueOf(values.get(0)));
+        MACROS.put("int", values -> Integer.parseInt(String.valueOf(values.get(0)).trim()));
+        MACROS.put("long", values -> Long.parseLong(String.valueOf(values.get(0)).trim()));
+        MACROS.put("double", values -> Double.parseDouble(String.valueOf(values.get(0)).trim()));
+        MACROS.put("boolean", values -> Boolean.parseBoolean(String.valueOf(values.get(0)).trim()));
+        MACROS.put("lower", values -> String.valueOf(values.get(0)).toLowerCase());
+        MACROS.put("upper", values -> String.valueOf(values.get(0)).toUpperCase());
+        MACROS.put("equals", values -> values.stream().distinct().count() == 1);
+        MACROS.put("concat", values -> values.stream().map(String::valueOf).collect(joining()));
+        MACROS.put("split", values -> Arrays.asList(String.valueOf(values.get(0)).split(String.valueOf(values.get(1)))));
+    }
+
+    static Map<String, Function<List<Object>, ?>> all(){
+        return MACROS;
+    }
+}
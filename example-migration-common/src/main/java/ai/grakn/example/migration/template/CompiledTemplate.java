@@ -0,0 +1,97 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import ai.grakn.graql.macro.Macro;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A Graql template parsed once into a tree of text, variable slots, conditions and loops, so that filling it in
+ * for a row of data only substitutes values rather than parsing the template again.
+ */
+public class CompiledTemplate {
+
+    // number of templates being rendered on each thread, which is more than one when a macro renders a template
+    private static final ThreadLocal<int[]> RENDER_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final Node root;
+
+    private CompiledTemplate(Node root){
+        this.root = root;
+    }
+
+    /**
+     * Compile a template that only uses the built in macros
+     */
+    public static CompiledTemplate compile(String template){
+        return compile(template, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Compile a template
+     * @param template Graql template to compile
+     * @param macros macros the template uses in addition to the built in macros
+     */
+    public static CompiledTemplate compile(String template, Collection<? extends Macro<?>> macros){
+        return compile(template, macros, Collections.emptyList());
+    }
+
+    /**
+     * Compile a template
+     * @param template Graql template to compile
+     * @param macros macros the template uses in addition to the built in macros
+     * @param sinkMacros macros writing into a reused sink, which take precedence over macros of the same name
+     */
+    public static CompiledTemplate compile(String template, Collection<? extends Macro<?>> macros,
+                                           Collection<? extends SinkMacro> sinkMacros){
+        Map<String, Function<List<Object>, ?>> available = new HashMap<>(BuiltInMacros.all());
+        macros.forEach(macro -> available.put(macro.name(), macro::apply));
+        Map<String, SinkMacro> availableSinkMacros = new HashMap<>();
+        sinkMacros.forEach(macro -> availableSinkMacros.put(macro.name(), macro));
+        return new CompiledTemplate(new TemplateCompiler(template, available, availableSinkMacros).compile());
+    }
+
+    /**
+     * Fill in the template for the given data
+     * @return the resulting Graql queries
+     */
+    public String render(Map<String, Object> data){
+        StringBuilder out = new StringBuilder();
+        render(data, out);
+        return out.toString();
+    }
+
+    /**
+     * Fill in the template for the given data, appending the resulting Graql queries to the given builder
+     */
+    public void render(Map<String, Object> data, StringBuilder out){
+        int[] depth = RENDER_DEPTH.get();
+        try {
+            root.render(Scope.of(data, depth[0]++), out);
+        } finally {
+            depth[0]--;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A value used in a template: a data variable, a literal or the result of a macro
+ */
+interface Expression {
+
+    Object evaluate(Scope scope);
+
+    /**
+     * A data variable such as {@code <name>} or {@code <address.city>}, with its path split up front
+     */
+    class Variable implements Expression {
+        private final String[] path;
+
+        Variable(String name){
+            this.path = name.split("\\.");
+        }
+
+        @Override
+        public Object evaluate(Scope scope) {
+            Object value = scope.get(path[0]);
+            for(int i = 1; i < path.length && value != null; i++){
+                value = value instanceof Map ? ((Map<?, ?>) value).get(path[i]) : null;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A literal string, number, boolean or null
+     */
+    class Literal implements Expression {
+        private final Object value;
+
+        Literal(Object value){
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(Scope scope) {
+            return value;
+        }
+    }
+
+    /**
+     * A call to a macro such as {@code @double(<score>)}, with the macro looked up when the template is compiled
+     */
+    class MacroCall implements Expression {
+        private final Function<List<Object>, ?> macro;
+        private final Expression[] arguments;
+
+        MacroCall(Function<List<Object>, ?> macro, Expression[] arguments){
+            this.macro = macro;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Object evaluate(Scope scope) {
+            Object[] values = new Object[arguments.length];
+            for(int i = 0; i < arguments.length; i++){
+                values[i] = arguments[i].evaluate(scope);
+            }
+            return macro.apply(Arrays.asList(values));
+        }
+    }
+
+    /**
+     * A call to a {@link SinkMacro}. Each thread has its own argument list and sink for each call, which are
+     * reused every time the call is evaluated. A template rendered again while it is already being rendered on the
+     * same thread, for example by one of its own macros, gets another argument list and sink for each level, so
+     * the inner render does not overwrite a sink the outer render is still reading.
+     */
+    class SinkMacroCall implements Expression {
+        private final SinkMacro macro;
+        private final Expression[] arguments;
+        private final ThreadLocal<List<Call>> calls = ThreadLocal.withInitial(ArrayList::new);
+
+        SinkMacroCall(SinkMacro macro, Expression[] arguments){
+            this.macro = macro;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Object evaluate(Scope scope) {
+            List<Call> depths = calls.get();
+            while(depths.size() <= scope.depth()) depths.add(new Call(arguments.length));
+            Call call = depths.get(scope.depth());
+
+            for(int i = 0; i < arguments.length; i++){
+                call.values[i] = arguments[i].evaluate(scope);
+            }
+            call.sink.clear();
+            macro.apply(call.arguments, call.sink);
+            return call.sink;
+        }
+
+        private static class Call {
+            private final Object[] values;
+            private final List<Object> arguments;
+            private final MacroSink sink = new MacroSink();
+
+            private Call(int arguments){
+                this.values = new Object[arguments];
+                this.arguments = Arrays.asList(values);
+            }
+        }
+    }
+
+    /**
+     * A comparison between two expressions, as used in if conditions
+     */
+    class Comparison implements Expression {
+        private final Expression left;
+        private final Expression right;
+        private final boolean equal;
+
+        Comparison(Expression left, Expression right, boolean equal){
+            this.left = left;
+            this.right = right;
+            this.equal = equal;
+        }
+
+        @Override
+        public Object evaluate(Scope scope) {
+            Object l = left.evaluate(scope);
+            Object r = right.evaluate(scope);
+            boolean same;
+            if(l instanceof Number && r instanceof Number){
+                same = ((Number) l).doubleValue() == ((Number) r).doubleValue();
+            } else if(l instanceof CharSequence && r instanceof CharSequence){
+                same = l.toString().contentEquals((CharSequence) r);
+            } else {
+                same = Objects.equals(l, r);
+            }
+            return same == equal;
+        }
+    }
+
+    /**
+     * Conditions combined with and, or and not
+     */
+    class Logical implements Expression {
+        enum Operator { AND, OR, NOT }
+
+        private final Operator operator;
+        private final Expression left;
+        private final Expression right;
+
+        Logical(Operator operator, Expression left, Expression right){
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Scope scope) {
+            switch (operator){
+                case AND: return isTrue(left.evaluate(scope)) && isTrue(right.evaluate(scope));
+                case OR: return isTrue(left.evaluate(scope)) || isTrue(right.evaluate(scope));
+                default: return !isTrue(left.evaluate(scope));
+            }
+        }
+    }
+
+    static boolean isTrue(Object value){
+        return value != null && !Boolean.FALSE.equals(value);
+    }
+}
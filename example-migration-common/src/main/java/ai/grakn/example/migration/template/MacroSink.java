@@ -0,0 +1,124 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * The results of a {@link SinkMacro} call, used by the template like the list returned by other macros.
+ *
+ * Parts of a larger string are added as views onto that string, and the view objects are kept and reused once
+ * the sink is cleared, so filling a sink that has been used before does not allocate.
+ */
+public final class MacroSink extends AbstractList<Object> {
+
+    private Object[] values = new Object[8];
+    private Slice[] slices = new Slice[8];
+    private int size = 0;
+
+    /**
+     * Add characters {@code start} to {@code end} of the text, without copying them
+     */
+    public void add(CharSequence text, int start, int end){
+        if(start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Cannot take " + start + " to " + end + " of text of length " + text.length());
+        }
+        ensureCapacity();
+        Slice slice = slices[size];
+        if(slice == null) slice = slices[size] = new Slice();
+        slice.set(text, start, end);
+        values[size++] = slice;
+    }
+
+    /**
+     * Add a value as it is
+     */
+    @Override
+    public boolean add(Object value){
+        ensureCapacity();
+        values[size++] = value;
+        return true;
+    }
+
+    @Override
+    public Object get(int index){
+        if(index >= size) throw new IndexOutOfBoundsException("Index " + index + " of sink of size " + size);
+        return values[index];
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Empty the sink, keeping the views onto text for reuse
+     */
+    @Override
+    public void clear(){
+        Arrays.fill(values, 0, size, null);
+        for(int i = 0; i < size; i++){
+            if(slices[i] != null) slices[i].set(null, 0, 0);
+        }
+        size = 0;
+    }
+
+    private void ensureCapacity(){
+        if(size == values.length){
+            values = Arrays.copyOf(values, size * 2);
+            slices = Arrays.copyOf(slices, size * 2);
+        }
+    }
+
+    /**
+     * A view onto part of a string
+     */
+    private static class Slice implements CharSequence {
+        private CharSequence text;
+        private int start;
+        private int end;
+
+        private void set(CharSequence text, int start, int end){
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return text.subSequence(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A part of a compiled template which writes Graql for the current scope
+ */
+interface Node {
+
+    void render(Scope scope, StringBuilder out);
+
+    /**
+     * Graql text copied as it is
+     */
+    class Text implements Node {
+        private final String text;
+
+        Text(String text){
+            this.text = text;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    /**
+     * A Graql variable, numbered by the scope it is rendered in
+     */
+    class GraqlVariable implements Node {
+        private final String name;
+
+        GraqlVariable(String name){
+            this.name = name;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            out.append('$').append(name).append(scope.number(name));
+        }
+    }
+
+    /**
+     * An expression written out as a Graql value
+     */
+    class Value implements Node {
+        private final Expression expression;
+
+        Value(Expression expression){
+            this.expression = expression;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            format(expression.evaluate(scope), out);
+        }
+    }
+
+    /**
+     * A sequence of nodes
+     */
+    class Block implements Node {
+        private final Node[] nodes;
+
+        Block(List<Node> nodes){
+            this.nodes = nodes.toArray(new Node[nodes.size()]);
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            for(Node node:nodes){
+                node.render(scope, out);
+            }
+        }
+    }
+
+    /**
+     * An if statement with any number of elseif branches and an optional else branch
+     */
+    class If implements Node {
+        private final Expression[] conditions;
+        private final Node[] branches;
+        private final Node otherwise;
+
+        If(List<Expression> conditions, List<Node> branches, Node otherwise){
+            this.conditions = conditions.toArray(new Expression[conditions.size()]);
+            this.branches = branches.toArray(new Node[branches.size()]);
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            for(int i = 0; i < conditions.length; i++){
+                if(Expression.isTrue(conditions[i].evaluate(scope))){
+                    branches[i].render(scope, out);
+                    return;
+                }
+            }
+            if(otherwise != null) otherwise.render(scope, out);
+        }
+    }
+
+    /**
+     * A for loop, either over a list of maps whose keys become variables or over values bound to a name. Without a
+     * name every element must be a map, as in Graql.
+     */
+    class For implements Node {
+        private final String name;
+        private final Expression values;
+        private final Node body;
+
+        For(String name, Expression values, Node body){
+            this.name = name;
+            this.values = values;
+            this.body = body;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void render(Scope scope, StringBuilder out) {
+            Object value = values.evaluate(scope);
+            Collection<?> elements = value instanceof Collection ? (Collection<?>) value :
+                    value == null ? Collections.emptyList() : Collections.singletonList(value);
+
+            for(Object element:elements){
+                Map<String, Object> bound;
+                if(name != null){
+                    bound = Collections.singletonMap(name, element);
+                } else if(element instanceof Map){
+                    bound = (Map<String, Object>) element;
+                } else {
+                    throw new IllegalArgumentException("A for loop without a variable name can only loop over maps, found " + element);
+                }
+                body.render(new Scope(bound, scope), out);
+            }
+        }
+    }
+
+    /**
+     * Doubles are written in plain decimal notation as Graql writes them, since Graql cannot parse an exponent
+     */
+    ThreadLocal<DecimalFormat> DOUBLE_FORMAT = ThreadLocal.withInitial(() -> {
+        DecimalFormat format = new DecimalFormat("#", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+        format.setMinimumFractionDigits(1);
+        format.setMaximumFractionDigits(12);
+        format.setMinimumIntegerDigits(1);
+        return format;
+    });
+
+    static void format(Object value, StringBuilder out){
+        if(value instanceof Double){
+            out.append(DOUBLE_FORMAT.get().format(value));
+        } else if(value instanceof Number || value instanceof Boolean || value instanceof Unescaped || value == null){
+            out.append(value);
+        } else {
+            CharSequence string = value instanceof CharSequence ? (CharSequence) value : value.toString();
+            out.append('"');
+            for(int i = 0; i < string.length(); i++){
+                char c = string.charAt(i);
+                if(c == '"' || c == '\\') out.append('\\');
+                out.append(c);
+            }
+            out.append('"');
+        }
+    }
+
+    /**
+     * A value written into the query without quoting, as returned by the noescp macro
+     */
+    class Unescaped {
+        private final String value;
+
+        Unescaped(String value){
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
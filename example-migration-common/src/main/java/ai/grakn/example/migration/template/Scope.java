@@ -0,0 +1,83 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Values visible while rendering part of a template. Loops add a scope holding the current element.
+ *
+ * Graql variables are numbered in the same way as by Graql's own templating: a variable is given the next number for
+ * its name the first time it is seen in a scope, and keeps the number it had in the enclosing scope when it was
+ * seen there first. So each iteration of a loop inserts its own concepts for the variables it introduces.
+ */
+class Scope {
+
+    private final Map<String, Object> values;
+    private final Scope parent;
+    private final Map<String, Integer> numbers;
+    private final Set<String> seen;
+    private final int depth;
+
+    Scope(Map<String, Object> values, Scope parent){
+        this(values, parent, parent.depth);
+    }
+
+    private Scope(Map<String, Object> values, Scope parent, int depth){
+        this.values = values;
+        this.parent = parent;
+        this.numbers = parent != null ? parent.numbers : new HashMap<>();
+        this.seen = parent != null ? new HashSet<>(parent.seen) : new HashSet<>();
+        this.depth = depth;
+    }
+
+    /**
+     * The scope of a whole template
+     * @param depth number of templates already being rendered on this thread when this one started
+     */
+    static Scope of(Map<String, Object> values, int depth){
+        return new Scope(values, null, depth);
+    }
+
+    Object get(String name){
+        for(Scope scope = this; scope != null; scope = scope.parent){
+            if(scope.values.containsKey(name)) return scope.values.get(name);
+        }
+        return null;
+    }
+
+    /**
+     * Number of templates already being rendered on this thread when the template of this scope started, so that
+     * a template rendered again from inside one of its own macros does not share state with the outer render
+     */
+    int depth(){
+        return depth;
+    }
+
+    /**
+     * The number the Graql variable is written with in this scope
+     */
+    int number(String variable){
+        if(seen.add(variable)) return numbers.merge(variable, 0, (previous, first) -> previous + 1);
+        return numbers.get(variable);
+    }
+}
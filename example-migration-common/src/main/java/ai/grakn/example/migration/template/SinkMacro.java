@@ -0,0 +1,41 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import java.util.List;
+
+/**
+ * A macro that writes its results into a sink owned by the caller, rather than returning a new list for every
+ * call like {@link ai.grakn.graql.macro.Macro}. The template reuses the same sink and argument list for every
+ * call made from the same place in a template on the same thread, so a macro that only adds parts of its
+ * arguments to the sink does not allocate anything per call.
+ */
+public interface SinkMacro {
+
+    /**
+     * Name the macro is called by in templates, as in {@code @name(...)}
+     */
+    String name();
+
+    /**
+     * Add the results of the macro for the given arguments to the sink, which is empty when this is called.
+     * Neither the arguments nor the sink may be kept after this returns.
+     */
+    void apply(List<Object> arguments, MacroSink sink);
+}
@@ -0,0 +1,66 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import ai.grakn.graql.macro.Macro;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles each template once and hands out the compiled form to every later user of the same template
+ */
+public class TemplateCache {
+
+    private final Map<String, Macro<?>> macros = new ConcurrentHashMap<>();
+    private final Map<String, SinkMacro> sinkMacros = new ConcurrentHashMap<>();
+    private final Map<String, CompiledTemplate> compiled = new ConcurrentHashMap<>();
+
+    /**
+     * Make a macro available to the templates compiled by this cache
+     */
+    public TemplateCache registerMacro(Macro<?> macro){
+        macros.put(macro.name(), macro);
+        compiled.clear();
+        return this;
+    }
+
+    /**
+     * Make a macro writing into a reused sink available to the templates compiled by this cache
+     */
+    public TemplateCache registerMacro(SinkMacro macro){
+        sinkMacros.put(macro.name(), macro);
+        compiled.clear();
+        return this;
+    }
+
+    /**
+     * Get the compiled form of a template, compiling it if this is the first time it has been seen
+     */
+    public CompiledTemplate get(String template){
+        return compiled.computeIfAbsent(template, t -> CompiledTemplate.compile(t, macros.values(), sinkMacros.values()));
+    }
+
+    /**
+     * Number of distinct templates compiled so far
+     */
+    public int size(){
+        return compiled.size();
+    }
+}
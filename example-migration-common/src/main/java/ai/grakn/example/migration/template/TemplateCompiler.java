@@ -0,0 +1,352 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import ai.grakn.example.migration.template.Expression.Logical.Operator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Parses a Graql template into a tree of {@link Node}s. Supports data variables, macros, if/elseif/else
+ * statements and for loops.
+ */
+class TemplateCompiler {
+
+    private final String template;
+    private final Map<String, Function<List<Object>, ?>> macros;
+    private final Map<String, SinkMacro> sinkMacros;
+    private int pos = 0;
+
+    TemplateCompiler(String template, Map<String, Function<List<Object>, ?>> macros, Map<String, SinkMacro> sinkMacros){
+        this.template = template;
+        this.macros = macros;
+        this.sinkMacros = sinkMacros;
+    }
+
+    Node compile(){
+        return block(false);
+    }
+
+    private Node block(boolean nested){
+        List<Node> nodes = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        int depth = 0;
+
+        while(pos < template.length()){
+            char c = template.charAt(pos);
+            if(c == '"' || c == '\''){
+                int start = pos;
+                quoted();
+                text.append(template, start, pos);
+            } else if(c == '<' && variableAhead()){
+                flush(text, nodes);
+                nodes.add(new Node.Value(variable()));
+            } else if(c == '@' && isNameStart(pos + 1)){
+                flush(text, nodes);
+                nodes.add(new Node.Value(macroCall()));
+            } else if(c == '$' && isNameChar(pos + 1)){
+                flush(text, nodes);
+                nodes.add(graqlVariable());
+            } else if(keywordAhead("if")){
+                flush(text, nodes);
+                nodes.add(ifStatement());
+            } else if(keywordAhead("for")){
+                flush(text, nodes);
+                nodes.add(forLoop());
+            } else if(c == '}' && depth == 0 && nested){
+                pos++;
+                flush(text, nodes);
+                return new Node.Block(nodes);
+            } else {
+                if(c == '{') depth++;
+                if(c == '}') depth--;
+                text.append(c);
+                pos++;
+            }
+        }
+
+        if(nested) throw error("Expected '}' to close block");
+        flush(text, nodes);
+        return new Node.Block(nodes);
+    }
+
+    private Node ifStatement(){
+        List<Expression> conditions = new ArrayList<>();
+        List<Node> branches = new ArrayList<>();
+        Node otherwise = null;
+
+        pos += "if".length();
+        conditions.add(parenthesisedCondition());
+        branches.add(doBlock());
+
+        while(true){
+            int mark = pos;
+            skipWhitespace();
+            if(keywordAhead("elseif")){
+                pos += "elseif".length();
+                conditions.add(parenthesisedCondition());
+                branches.add(doBlock());
+            } else if(wordAhead("else")){
+                pos += "else".length();
+                if(wordAhead("do")) pos += "do".length();
+                skipWhitespace();
+                expect('{');
+                otherwise = block(true);
+                break;
+            } else {
+                pos = mark;
+                break;
+            }
+        }
+
+        return new Node.If(conditions, branches, otherwise);
+    }
+
+    private Node forLoop(){
+        pos += "for".length();
+        skipWhitespace();
+        expect('(');
+        skipWhitespace();
+
+        String name = null;
+        if(isNameStart(pos)){
+            name = name();
+            if(!wordAhead("in")) throw error("Expected 'in' in for loop");
+            pos += "in".length();
+        }
+        Expression values = expression();
+        skipWhitespace();
+        expect(')');
+
+        return new Node.For(name, values, doBlock());
+    }
+
+    private Node doBlock(){
+        if(!wordAhead("do")) throw error("Expected 'do'");
+        pos += "do".length();
+        skipWhitespace();
+        expect('{');
+        return block(true);
+    }
+
+    private Node graqlVariable(){
+        pos++;
+        return new Node.GraqlVariable(name());
+    }
+
+    private Expression parenthesisedCondition(){
+        skipWhitespace();
+        expect('(');
+        Expression condition = or();
+        skipWhitespace();
+        expect(')');
+        return condition;
+    }
+
+    private Expression or(){
+        Expression left = and();
+        while(wordAhead("or")){
+            pos += "or".length();
+            left = new Expression.Logical(Operator.OR, left, and());
+        }
+        return left;
+    }
+
+    private Expression and(){
+        Expression left = not();
+        while(wordAhead("and")){
+            pos += "and".length();
+            left = new Expression.Logical(Operator.AND, left, not());
+        }
+        return left;
+    }
+
+    private Expression not(){
+        if(wordAhead("not")){
+            pos += "not".length();
+            return new Expression.Logical(Operator.NOT, not(), null);
+        }
+        return comparison();
+    }
+
+    private Expression comparison(){
+        Expression left = expression();
+        skipWhitespace();
+        if(template.startsWith("!=", pos)){
+            pos += 2;
+            return new Expression.Comparison(left, expression(), false);
+        } else if(template.startsWith("==", pos)){
+            pos += 2;
+            return new Expression.Comparison(left, expression(), true);
+        } else if(template.startsWith("=", pos)){
+            pos += 1;
+            return new Expression.Comparison(left, expression(), true);
+        }
+        return left;
+    }
+
+    private Expression expression(){
+        skipWhitespace();
+        if(pos >= template.length()) throw error("Expected a value");
+
+        char c = template.charAt(pos);
+        if(c == '<' && variableAhead()){
+            return variable();
+        } else if(c == '@'){
+            return macroCall();
+        } else if(c == '"' || c == '\''){
+            return new Expression.Literal(quoted());
+        } else if(Character.isDigit(c) || c == '-'){
+            return number();
+        } else if(isNameStart(pos)){
+            String word = name();
+            switch (word){
+                case "null": return new Expression.Literal(null);
+                case "true": return new Expression.Literal(true);
+                case "false": return new Expression.Literal(false);
+                default: throw error("Unexpected '" + word + "'");
+            }
+        }
+        throw error("Unexpected '" + c + "'");
+    }
+
+    private Expression variable(){
+        int end = template.indexOf('>', pos);
+        Expression variable = new Expression.Variable(template.substring(pos + 1, end));
+        pos = end + 1;
+        return variable;
+    }
+
+    private Expression macroCall(){
+        pos++;
+        String name = name();
+        Function<List<Object>, ?> macro = macros.get(name);
+        SinkMacro sinkMacro = sinkMacros.get(name);
+        if(macro == null && sinkMacro == null) throw error("Unknown macro @" + name);
+
+        skipWhitespace();
+        expect('(');
+        List<Expression> arguments = new ArrayList<>();
+        skipWhitespace();
+        if(peek() != ')'){
+            arguments.add(expression());
+            skipWhitespace();
+            while(peek() == ','){
+                pos++;
+                arguments.add(expression());
+                skipWhitespace();
+            }
+        }
+        expect(')');
+
+        Expression[] argumentArray = arguments.toArray(new Expression[arguments.size()]);
+        return sinkMacro != null ? new Expression.SinkMacroCall(sinkMacro, argumentArray) : new Expression.MacroCall(macro, argumentArray);
+    }
+
+    private Expression number(){
+        int start = pos;
+        pos++;
+        while(pos < template.length() && (Character.isDigit(peek()) || peek() == '.' || peek() == 'e' || peek() == 'E')) pos++;
+        String number = template.substring(start, pos);
+        try {
+            return new Expression.Literal(number.matches("-?\\d+") ? (Object) Long.parseLong(number) : (Object) Double.parseDouble(number));
+        } catch (NumberFormatException e){
+            throw error("Invalid number '" + number + "'");
+        }
+    }
+
+    /**
+     * Reads a quoted string, returning its unescaped contents and leaving the position after the closing quote
+     */
+    private String quoted(){
+        char quote = template.charAt(pos++);
+        StringBuilder value = new StringBuilder();
+        while(pos < template.length() && template.charAt(pos) != quote){
+            char c = template.charAt(pos++);
+            if(c == '\\' && pos < template.length()) c = template.charAt(pos++);
+            value.append(c);
+        }
+        expect(quote);
+        return value.toString();
+    }
+
+    private String name(){
+        int start = pos;
+        while(isNameChar(pos)) pos++;
+        if(start == pos) throw error("Expected a name");
+        return template.substring(start, pos);
+    }
+
+    private boolean variableAhead(){
+        int i = pos + 1;
+        while(i < template.length() && (isNameChar(i) || template.charAt(i) == '.')) i++;
+        return i > pos + 1 && i < template.length() && template.charAt(i) == '>';
+    }
+
+    private boolean keywordAhead(String keyword){
+        if(!template.startsWith(keyword, pos)) return false;
+        if(pos > 0 && (isNameChar(pos - 1) || template.charAt(pos - 1) == '$')) return false;
+
+        int i = pos + keyword.length();
+        while(i < template.length() && Character.isWhitespace(template.charAt(i))) i++;
+        return i < template.length() && template.charAt(i) == '(';
+    }
+
+    private boolean wordAhead(String word){
+        skipWhitespace();
+        return template.startsWith(word, pos) && !isNameChar(pos + word.length());
+    }
+
+    private void skipWhitespace(){
+        while(pos < template.length() && Character.isWhitespace(template.charAt(pos))) pos++;
+    }
+
+    private char peek(){
+        return pos < template.length() ? template.charAt(pos) : '\0';
+    }
+
+    private void expect(char c){
+        if(peek() != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private boolean isNameStart(int i){
+        return i < template.length() && (Character.isLetter(template.charAt(i)) || template.charAt(i) == '_');
+    }
+
+    private boolean isNameChar(int i){
+        if(i >= template.length()) return false;
+        char c = template.charAt(i);
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+    }
+
+    private static void flush(StringBuilder text, List<Node> nodes){
+        if(text.length() > 0){
+            nodes.add(new Node.Text(text.toString()));
+            text.setLength(0);
+        }
+    }
+
+    private IllegalArgumentException error(String message){
+        return new IllegalArgumentException(message + " at position " + pos + " of template");
+    }
+}
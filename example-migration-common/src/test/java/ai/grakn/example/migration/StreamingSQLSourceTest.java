@@ -0,0 +1,133 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reads a table of an in-memory H2 database in PostgreSQL mode through each of the ways the source can read rows
+ */
+public class StreamingSQLSourceTest {
+
+    private static final int ROWS = 25;
+    private static final String QUERY = "SELECT id, name FROM person ORDER BY id;";
+
+    private Connection connection;
+
+    @Before
+    public void createTable() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:streaming;MODE=PostgreSQL");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(255))");
+            for(int id = 1; id <= ROWS; id++){
+                statement.execute("INSERT INTO person VALUES (" + id + ", 'Person " + id + "')");
+            }
+        }
+    }
+
+    @After
+    public void dropTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE person");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void rowsAreStreamedThroughOneCursor(){
+        StreamingSQLSource source = new StreamingSQLSource(QUERY, connection).fetchSize(4);
+        try (Stream<Map<String, Object>> rows = source.convert()) {
+            assertEquals(ids(1, ROWS), rows.map(row -> row.get("ID")).collect(toList()));
+        }
+    }
+
+    @Test
+    public void rowsAreReadInPagesAcrossPageBoundaries(){
+        // 25 rows in pages of 5 ends on a full page, so the source must ask for one more page to find the end
+        assertEquals(ids(1, ROWS), keysetIds(new StreamingSQLSource(QUERY, connection).keyset("id", 5), null));
+        assertEquals(ids(1, ROWS), keysetIds(new StreamingSQLSource(QUERY, connection).keyset("id", 10), null));
+        assertEquals(ids(1, ROWS), keysetIds(new StreamingSQLSource(QUERY, connection).keyset("id", ROWS + 1), null));
+    }
+
+    @Test
+    public void pagedReadResumesAfterKey(){
+        StreamingSQLSource source = new StreamingSQLSource(QUERY, connection).keyset("id", 10);
+        // the first page after key 10 starts on a page boundary, and key 20 leaves part of a page
+        assertEquals(ids(11, ROWS), keysetIds(source, "10"));
+        assertEquals(ids(21, ROWS), keysetIds(source, "20"));
+        assertEquals(Collections.emptyList(), keysetIds(source, Integer.toString(ROWS)));
+    }
+
+    @Test
+    public void positionOfRowIsItsKey(){
+        StreamingSQLSource source = new StreamingSQLSource(QUERY, connection).keyset("id", 10);
+        try (Stream<SourceRow> rows = source.rowsAfter("5")) {
+            rows.forEach(row -> assertEquals(row.data().get("ID").toString(), row.position()));
+        }
+    }
+
+    @Test
+    public void readWithoutKeyResumesAfterCount(){
+        StreamingSQLSource source = new StreamingSQLSource(QUERY, connection).fetchSize(4);
+        try (Stream<SourceRow> rows = source.rowsAfter("7")) {
+            List<SourceRow> read = rows.collect(toList());
+            assertEquals(ids(8, ROWS), read.stream().map(row -> row.data().get("ID")).collect(toList()));
+            assertEquals("8", read.get(0).position());
+            assertEquals(Integer.toString(ROWS), read.get(read.size() - 1).position());
+        }
+    }
+
+    @Test
+    public void columnsAreLookedUpIgnoringCase(){
+        // H2 returns unquoted column labels upper-cased, whatever case the query used
+        StreamingSQLSource source = new StreamingSQLSource("SELECT id, name AS Name FROM person WHERE id = 1;", connection);
+        try (Stream<Map<String, Object>> rows = source.convert()) {
+            Map<String, Object> row = rows.findFirst().get();
+            assertEquals(1, row.get("id"));
+            assertEquals(1, row.get("Id"));
+            assertEquals("Person 1", row.get("name"));
+            assertEquals("Person 1", row.get("NAME"));
+        }
+    }
+
+    private static List<Object> keysetIds(StreamingSQLSource source, String after){
+        try (Stream<SourceRow> rows = source.rowsAfter(after)) {
+            return rows.map(row -> row.data().get("ID")).collect(toList());
+        }
+    }
+
+    private static List<Object> ids(int from, int to){
+        return IntStream.rangeClosed(from, to).boxed().collect(toList());
+    }
+}
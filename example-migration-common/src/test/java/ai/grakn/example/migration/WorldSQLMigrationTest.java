@@ -0,0 +1,112 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration;
+
+import ai.grakn.Grakn;
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.graql.MatchQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Migrates the world database of the SQL example, loaded into an in-memory H2 database in PostgreSQL mode, into an
+ * in-memory graph. H2 returns the column labels upper-cased while the templates ask for them in mixed case, so
+ * this only fills in the templates if the source looks columns up ignoring case.
+ */
+public class WorldSQLMigrationTest {
+
+    private static final Path WORLD = Paths.get("..", "example-sql-migration/src/main/resources");
+    private static final String[] TABLES = {"continents", "regions", "countries", "districts", "cities"};
+
+    private Connection connection;
+    private GraknSession session;
+
+    @Before
+    public void loadWorld() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:world;MODE=PostgreSQL", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + WORLD.resolve("world.sql").toAbsolutePath() + "'");
+        }
+
+        session = Grakn.session(Grakn.IN_MEMORY, "world");
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            graph.graql().parse(read("ontology.gql")).execute();
+            graph.commit();
+        }
+    }
+
+    @After
+    public void close() throws SQLException {
+        session.close();
+        connection.close();
+    }
+
+    @Test
+    public void countriesAndCitiesAreMigrated(){
+        TemplateLoader loader = TemplateLoader.to(session);
+        for(String table:TABLES){
+            StreamingSQLSource source = new StreamingSQLSource(read(table + "/query.sql"), connection);
+            try (Stream<Map<String, Object>> rows = source.convert()) {
+                loader.load(read(table + "/template.gql"), rows);
+            }
+        }
+
+        try (GraknGraph graph = session.open(GraknTxType.READ)) {
+            assertEquals(239, graph.getEntityType("country").instances().size());
+            assertEquals(4079, graph.getEntityType("city").instances().size());
+
+            assertTrue(ask(graph, "match $country isa country has countrycode \"NER\" has name \"Niger\"; " +
+                    "$continent isa continent has name \"Africa\"; " +
+                    "(on-continent: $country, continent-of: $continent) isa has-continent;"));
+            assertTrue(ask(graph, "match $country isa country has countrycode \"NER\"; " +
+                    "$city isa city has name \"Niamey\" has population 420000; " +
+                    "(contains-city: $country, in-country: $city) isa has-city;"));
+        }
+    }
+
+    private static boolean ask(GraknGraph graph, String match){
+        return graph.graql().<MatchQuery>parse(match).ask().execute();
+    }
+
+    private static String read(String file){
+        try {
+            return new String(Files.readAllBytes(WORLD.resolve(file)), StandardCharsets.UTF_8);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example.migration.template;
+
+import ai.grakn.graql.Graql;
+import ai.grakn.graql.Query;
+import ai.grakn.graql.QueryBuilder;
+import ai.grakn.graql.macro.Macro;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that each example's template renders to the same queries through {@link CompiledTemplate} as through
+ * Graql's own templating
+ */
+public class CompiledTemplateTest {
+
+    private static final Macro<List<String>> GIPHY = new Macro<List<String>>() {
+        @Override
+        public List<String> apply(List<Object> values) {
+            List<String> parts = Arrays.asList(String.valueOf(values.get(0)).split("-"));
+            return parts.size() == 1 ? Collections.singletonList("gif") : parts.subList(0, parts.size() - 1);
+        }
+
+        @Override
+        public String name() {
+            return "giphy";
+        }
+    };
+
+    @Test
+    public void sqlContinentsRegionsDistrictsAndLanguages(){
+        assertSameAsGraql("example-sql-migration/src/main/resources/continents/template.gql", row("continent", "Africa"));
+        assertSameAsGraql("example-sql-migration/src/main/resources/regions/template.gql", row("region", "Western \"Africa\""));
+        assertSameAsGraql("example-sql-migration/src/main/resources/districts/template.gql", row("district", "Tahoua"));
+        assertSameAsGraql("example-sql-migration/src/main/resources/languages/template.gql", row("language", "Hausa"));
+    }
+
+    @Test
+    public void sqlCountries(){
+        String template = "example-sql-migration/src/main/resources/countries/template.gql";
+
+        Map<String, Object> niger = row("Region", "Western Africa", "Continent", "Africa", "Name", "Niger", "Code", "NER",
+                "IndepYear", 1960, "Population", 10730000, "LifeExpectancy", 41.3, "GNP", 1706.0, "GNPold", 1580.0,
+                "LocalName", "Niger", "GovernmentForm", "Republic", "HeadOfState", "Mamadou Tandja");
+        assertSameAsGraql(template, niger);
+
+        Map<String, Object> antarctica = row("Region", "Antarctica", "Continent", "Antarctica", "Name", "Antarctica",
+                "Code", "ATA", "IndepYear", null, "Population", 0, "LifeExpectancy", null, "GNP", 0.0, "GNPold", null,
+                "LocalName", "Antarctica", "GovernmentForm", "Co-administrated", "HeadOfState", null);
+        assertSameAsGraql(template, antarctica);
+
+        // large and small doubles, which Java writes with an exponent
+        Map<String, Object> large = new HashMap<>(niger);
+        large.put("GNP", 10000000.0);
+        large.put("GNPold", 0.0001);
+        assertSameAsGraql(template, large);
+    }
+
+    @Test
+    public void sqlCitiesCapitalsAndLanguagesSpoken(){
+        assertSameAsGraql("example-sql-migration/src/main/resources/cities/template.gql",
+                row("CountryCode", "NER", "District", "Niamey", "Name", "Niamey", "Population", 420000));
+        assertSameAsGraql("example-sql-migration/src/main/resources/capitals/template.gql",
+                row("code", "NER", "capital", "Niamey"));
+        assertSameAsGraql("example-sql-migration/src/main/resources/capitals/template.gql",
+                row("code", "ATA", "capital", null));
+        assertSameAsGraql("example-sql-migration/src/main/resources/languagesspoken/template.gql",
+                row("Language", "Hausa", "CountryCode", "NER", "IsOfficial", "F", "Percentage", 53.1));
+        assertSameAsGraql("example-sql-migration/src/main/resources/languagesspoken/template.gql",
+                row("Language", "French", "CountryCode", "NER", "IsOfficial", "T", "Percentage", 0.0));
+    }
+
+    @Test
+    public void inferenceCitiesAndCountries(){
+        assertSameAsGraql("example-inference/migration/cities/template.gql",
+                row("CountryCode", "NER", "Name", "Zinder", "District", "Zinder"));
+        assertSameAsGraql("example-inference/migration/cities/template.gql",
+                row("CountryCode", "NER", "Name", "Agadez", "District", null));
+        assertSameAsGraql("example-inference/migration/countries/template.gql",
+                row("Name", "Niger", "Code", "NER", "Continent", "Africa", "Region", "Western Africa"));
+        assertSameAsGraql("example-inference/migration/countries/template.gql",
+                row("Name", "Niger", "Code", "NER", "Continent", null, "Region", null));
+    }
+
+    @Test
+    public void gamesMatch(){
+        assertSameAsGraql("example-csv-migration-games/match.gql", row("genre", "Platformer", "platform", "PlayStation Vita",
+                "title", "LittleBigPlanet PS Vita", "score_phrase", "Amazing", "score", "9", "release_year", "2012"));
+        assertSameAsGraql("example-csv-migration-games/match.gql", row("genre", "Puzzle", "platform", "iPhone",
+                "title", "Dots", "score_phrase", "Great", "score", "8.5", "release_year", "2013"));
+    }
+
+    @Test
+    public void giphyLoopsOverMapsAndMacroResults(){
+        Map<String, Object> cat = row("bitly_url", "http://gph.is/1", "rating", "g", "slug", "funny-cat-abc123");
+        Map<String, Object> dog = row("bitly_url", "http://gph.is/2", "rating", "pg", "slug", "xyz789");
+
+        assertSameAsGraql("example-json-migration-giphy/src/main/resources/template.gql",
+                row("data", Arrays.asList(cat, dog)));
+        assertSameAsGraql("example-json-migration-giphy/src/main/resources/singletemplate.gql", cat);
+    }
+
+    @Test
+    public void variablesAreNumberedPerScope(){
+        String template = "insert $x isa person; " +
+                "for (name in <names>) do { $y isa person has name <name>; (parent: $x, child: $y) isa parentship; " +
+                "for (<pets>) do { $z isa pet has name <pet>; (owner: $y, owned: $z) isa ownership; } }";
+        Map<String, Object> data = row("names", Arrays.asList("Bart", "Lisa"),
+                "pets", Arrays.asList(row("pet", "Santa's Little Helper"), row("pet", "Snowball")));
+
+        assertEquals("insert $x0 isa person; " +
+                        "$y0 isa person has name \"Bart\"; (parent: $x0, child: $y0) isa parentship; " +
+                        "$z0 isa pet has name \"Santa's Little Helper\"; (owner: $y0, owned: $z0) isa ownership; " +
+                        "$z1 isa pet has name \"Snowball\"; (owner: $y0, owned: $z1) isa ownership; " +
+                        "$y1 isa person has name \"Lisa\"; (parent: $x0, child: $y1) isa parentship; " +
+                        "$z2 isa pet has name \"Santa's Little Helper\"; (owner: $y1, owned: $z2) isa ownership; " +
+                        "$z3 isa pet has name \"Snowball\"; (owner: $y1, owned: $z3) isa ownership;",
+                CompiledTemplate.compile(template).render(data).replaceAll("\\s+", " ").trim());
+        assertEquals(Graql.withoutGraph().parseTemplate(template, data), compiled(template, data));
+    }
+
+    @Test
+    public void doublesAreWrittenWithoutExponent(){
+        Map<String, Object> data = row("large", 10000000.0, "small", 0.0001, "whole", 9.0);
+        assertEquals("10000000.0 0.0001 9.0", CompiledTemplate.compile("<large> <small> <whole>").render(data));
+    }
+
+    @Test
+    public void sinkIsNotOverwrittenWhenTemplateIsRenderedFromItsOwnMacro(){
+        SinkMacro words = new SinkMacro() {
+            @Override
+            public String name() {
+                return "words";
+            }
+
+            @Override
+            public void apply(List<Object> arguments, MacroSink sink) {
+                for(String word:String.valueOf(arguments.get(0)).split(" ")) sink.add(word);
+            }
+        };
+
+        // the outer render's loop is still reading its words when the inner render puts its own words
+        AtomicReference<CompiledTemplate> template = new AtomicReference<>();
+        Macro<String> inner = new Macro<String>() {
+            @Override
+            public String apply(List<Object> values) {
+                return values.get(0).equals("a") ? template.get().render(row("text", "c d")) : "";
+            }
+
+            @Override
+            public String name() {
+                return "inner";
+            }
+        };
+        template.set(CompiledTemplate.compile("for (w in @words(<text>)) do { <w> @noescp(@inner(<w>)) }",
+                Collections.singletonList(inner), Collections.singletonList(words)));
+
+        assertEquals("\"a\" \"c\" \"d\" \"b\"", template.get().render(row("text", "a b")).replaceAll("\\s+", " ").trim());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loopWithoutNameOverValuesIsRejected(){
+        CompiledTemplate.compile("insert for (<names>) do { $x isa person; }")
+                .render(row("names", Arrays.asList("Bart", "Lisa")));
+    }
+
+    private static void assertSameAsGraql(String file, Map<String, Object> data){
+        String template = read(file);
+        QueryBuilder graql = Graql.withoutGraph();
+        graql.registerMacro(GIPHY);
+        List<Query<?>> expected = graql.parseTemplate(template, data);
+        assertEquals(file + " with " + data, expected, compiled(template, data));
+    }
+
+    private static List<Query<?>> compiled(String template, Map<String, Object> data){
+        Collection<Macro<?>> macros = Collections.singletonList(GIPHY);
+        return Graql.withoutGraph().parseList(CompiledTemplate.compile(template, macros).render(data));
+    }
+
+    private static Map<String, Object> row(Object... keysAndValues){
+        Map<String, Object> row = new HashMap<>();
+        for(int i = 0; i < keysAndValues.length; i += 2){
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    /**
+     * Read a file of another example, relative to the root of the repository
+     */
+    private static String read(String file){
+        try {
+            return new String(Files.readAllBytes(Paths.get("..", file)), StandardCharsets.UTF_8);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -18,8 +18,13 @@
 
 import ai.grakn.Grakn;
 import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
 import ai.grakn.GraknTxType;
 import ai.grakn.client.Client;
+import ai.grakn.example.migration.InferenceCache;
+import ai.grakn.example.migration.SessionPool;
+
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
     private static final String SERVER_ADDRESS = "127.0.0.1:4567";
@@ -36,10 +41,40 @@ public class Main {
             System.out.println("|||||||||||||||||||||||||||||||||   Grakn OWL Migration Example   ||||||||||||||||||||||||||||||||");
             System.out.println("=================================================================================================");
         }
-        // get connection to the graph
-        GraknGraph graph = Grakn.session(Grakn.DEFAULT_URI, keyspace).open(GraknTxType.WRITE);
+        // get connection to the graph, keeping the session warm from the migration through to the queries
+        SessionPool sessions = new SessionPool(Grakn.DEFAULT_URI);
+        GraknSession session = sessions.session(keyspace);
+
+        // -DinferenceCache=true keeps the answers of the queries using inference, so asking them again is quicker.
+        // The migration tells the cache what it commits, so no answer outlives the data it was worked out from.
+        InferenceCache cache = Boolean.getBoolean("inferenceCache") ? new InferenceCache() : null;
+
+        // -Dparallel=<threads> migrates the individuals in batches on several threads
+        int threads = Integer.getInteger("parallel", 0);
+        if(threads > 0){
+            OWLResourceMigrator.migrateInParallel(filePath, session, threads, cache);
+        } else {
+            OWLResourceMigrator.migrate(filePath, session.open(GraknTxType.WRITE), cache);
+        }
+
+        SessionPool.Transaction transaction = sessions.open(keyspace, GraknTxType.WRITE);
+        GraknGraph graph = transaction.graph();
+
+        if(cache != null){
+            OWLResourceMigrator.printInformationAboutWorld(graph, cache);
+            OWLResourceMigrator.printInformationAboutWorld(graph, cache);
+            System.out.println("Inference cache: " + cache);
+        } else {
+            OWLResourceMigrator.printInformationAboutWorld(graph);
+        }
+
+        // -DsemiNaive=true also counts the descendants without the reasoner, following the parent relations
+        if(Boolean.getBoolean("semiNaive")){
+            OWLResourceMigrator.printDescendantsSemiNaive(graph, ForkJoinPool.commonPool());
+        }
 
-        OWLResourceMigrator.migrate(filePath, graph);
-        OWLResourceMigrator.printInformationAboutWorld(graph);
+        transaction.close();
+        System.out.println("Session pool: " + sessions);
+        sessions.close();
     }
 }
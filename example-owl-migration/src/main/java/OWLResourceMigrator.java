@@ -17,6 +17,11 @@
  */
 
 import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.concept.Concept;
+import ai.grakn.concept.ConceptId;
+import ai.grakn.example.TransitiveClosure;
+import ai.grakn.example.migration.InferenceCache;
 import ai.grakn.graql.MatchQuery;
 import ai.grakn.graql.QueryBuilder;
 import ai.grakn.migration.owl.OWLMigrator;
@@ -25,6 +30,10 @@ import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import static ai.grakn.graql.Graql.count;
 import static ai.grakn.graql.Graql.var;
@@ -33,16 +42,66 @@ import static ai.grakn.graql.Graql.var;
 public class OWLResourceMigrator {
 
     public static void migrate(String resource, GraknGraph graph){
-        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        migrate(resource, graph, null);
+    }
+
+    /**
+     * Migrate the ontology in the resource in a single transaction
+     * @param cache cache of inferred answers to forget once the migration is committed, or null
+     */
+    public static void migrate(String resource, GraknGraph graph, InferenceCache cache){
         OWLMigrator migrator = new ai.grakn.migration.owl.OWLMigrator();
-        OWLOntology ontology;
+
+        try {
+            migrator.ontology(load(resource)).graph(graph).migrate();
+            migrator.graph().commit();
+        }
+        catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        if(cache != null) cache.rulesChanged();
+    }
+
+    /**
+     * Migrate the ontology in the resource, committing the individuals in batches on several threads
+     * @param threads number of threads committing individuals
+     * @param cache cache of inferred answers to tell about each commit, or null
+     */
+    public static void migrateInParallel(String resource, GraknSession session, int threads, InferenceCache cache){
+        ParallelOWLMigrator.to(session).threads(threads).inferenceCache(cache).migrate(load(resource));
+    }
+
+    /**
+     * Prints the number of descendants of Eleanor Pringle (1741), working out the transitive op-hasAncestor
+     * relation by semi-naive evaluation over the parent relations rather than with the reasoner
+     */
+    public static void printDescendantsSemiNaive(GraknGraph graph, ForkJoinPool pool){
+        // edges from each parent to their children
+        Map<ConceptId, Set<ConceptId>> children = new HashMap<>();
+        for(String property:new String[]{"hasParent", "hasFather", "hasMother"}){
+            TransitiveClosure.addEdges(graph, children, "op-" + property,
+                    "owl-object-op-" + property, "owl-subject-op-" + property);
+        }
+        for(String property:new String[]{"isParentOf", "isFatherOf", "isMotherOf"}){
+            TransitiveClosure.addEdges(graph, children, "op-" + property,
+                    "owl-subject-op-" + property, "owl-object-op-" + property);
+        }
+
+        Concept eleanor = graph.graql().match(var("y").has("owl-iri", "eeleanor_pringle_1741")).get("y").findFirst().get();
+        long start = System.currentTimeMillis();
+        TransitiveClosure<ConceptId> ancestors = new TransitiveClosure<>(children, pool);
+        Set<ConceptId> descendants = ancestors.reachableFrom(eleanor.getId());
+        System.out.println("Eleanor Pringle has " + descendants.size() + " descendants, found in " +
+                ancestors.rounds() + " rounds in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private static OWLOntology load(String resource){
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
 
         try (InputStream in = OWLResourceMigrator.class.getResourceAsStream(resource)) {
             if (in == null)
                 throw new NullPointerException("Resource : " + resource + " not found.");
-            ontology = manager.loadOntologyFromOntologyDocument(in);
-            migrator.ontology(ontology).graph(graph).migrate();
-            migrator.graph().commit();
+            return manager.loadOntologyFromOntologyDocument(in);
         }
         catch (Exception ex) {
             throw new RuntimeException(ex);
@@ -53,6 +112,14 @@ public class OWLResourceMigrator {
      * Prints information about the migrated database
      */
     public static void printInformationAboutWorld(GraknGraph graph){
+        printInformationAboutWorld(graph, null);
+    }
+
+    /**
+     * Prints information about the migrated database, answering the queries that use inference from the cache
+     * @param cache cache of inferred answers, or null to work out the answers every time
+     */
+    public static void printInformationAboutWorld(GraknGraph graph, InferenceCache cache){
         // What are the types that were migrated?
         System.out.println("Migrated Types:");
         graph.admin().getMetaEntityType().instances().forEach(System.out::println);
@@ -71,7 +138,7 @@ public class OWLResourceMigrator {
                         .rel("owl-subject-op-hasAncestor", "x")
                         .rel("owl-object-op-hasAncestor", "y"))
                 .select("x");
-        final long descendants = descendantQuery.stream().count();
+        final long descendants = cache != null ? cache.answers(graph, descendantQuery).size() : descendantQuery.stream().count();
         System.out.println("Eleanor Pringle has " + descendants + " descdendants.");
 
         // Who are the great uncles of Ethel Archer?
@@ -82,6 +149,12 @@ public class OWLResourceMigrator {
                 var().isa("op-hasGreatUncle")
                         .rel("owl-subject-op-hasGreatUncle", "x")
                         .rel("owl-object-op-hasGreatUncle", "y"));
-        greatUncleQuery.get("iri").map(i -> i.asResource().getValue()).forEach(System.out::println);
+        if(cache != null){
+            cache.answers(graph, greatUncleQuery).stream()
+                    .map(answer -> graph.getConcept(answer.get("iri")).asResource().getValue())
+                    .forEach(System.out::println);
+        } else {
+            greatUncleQuery.get("iri").map(i -> i.asResource().getValue()).forEach(System.out::println);
+        }
     }
 }
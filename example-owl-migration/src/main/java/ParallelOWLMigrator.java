@@ -0,0 +1,202 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
+import ai.grakn.GraknTxType;
+import ai.grakn.example.migration.BulkWriter;
+import ai.grakn.example.migration.InferenceCache;
+import ai.grakn.example.migration.WriteSpec;
+import ai.grakn.migration.owl.OWLMigrator;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLDeclarationAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLIndividual;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Migrates an OWL ontology using several threads. The classes and properties are migrated first in a single
+ * transaction. The individuals are then migrated along with their class and data property assertions, followed by
+ * the assertions between individuals, each committed in batches by a {@link BulkWriter}.
+ *
+ * Every individual is added by exactly one batch, and assertions between individuals are only migrated once all
+ * the individuals exist, so batches committed at the same time never add the same individual twice. An individual
+ * that is only mentioned by assertions between individuals, without being declared or given a class or data
+ * property value, is declared in the individual phase for the same reason.
+ */
+public class ParallelOWLMigrator {
+
+    public static final int BATCH_SIZE = 200;
+
+    private final GraknSession session;
+    private int batchSize = BATCH_SIZE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private InferenceCache inferenceCache = null;
+
+    // ontology managers are not thread safe, so each thread builds the ontologies of its batches with its own
+    private final ThreadLocal<OWLOntologyManager> managers = ThreadLocal.withInitial(OWLManager::createOWLOntologyManager);
+
+    private ParallelOWLMigrator(GraknSession session){
+        this.session = session;
+    }
+
+    /**
+     * @param session session bound to the keyspace to migrate the ontology into
+     */
+    public static ParallelOWLMigrator to(GraknSession session){
+        return new ParallelOWLMigrator(session);
+    }
+
+    /**
+     * Set the number of individuals committed in each transaction
+     */
+    public ParallelOWLMigrator batchSize(int batchSize){
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the number of threads committing individuals, by default the number of available processors
+     */
+    public ParallelOWLMigrator threads(int threads){
+        if(threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Tell the given cache of inferred answers about every transaction committed by the migration. The classes and
+     * properties may add rules, and the types an individual is migrated into are not known in advance, so each
+     * commit forgets every answer.
+     */
+    public ParallelOWLMigrator inferenceCache(InferenceCache inferenceCache){
+        this.inferenceCache = inferenceCache;
+        return this;
+    }
+
+    /**
+     * Migrate the ontology, blocking until it has all been committed
+     */
+    public void migrate(OWLOntology ontology){
+        Set<OWLAxiom> schema = new HashSet<>();
+        Map<OWLIndividual, Set<OWLAxiom>> individuals = new LinkedHashMap<>();
+        Map<Object, Set<OWLAxiom>> assertions = new LinkedHashMap<>();
+
+        for(OWLAxiom axiom:ontology.getAxioms(Imports.INCLUDED)){
+            OWLIndividual individual = individualOf(axiom);
+            if(individual != null){
+                individuals.computeIfAbsent(individual, k -> new HashSet<>()).add(axiom);
+            } else if(AxiomType.ABoxAxiomTypes.contains(axiom.getAxiomType())){
+                // assertions about the same subject are migrated together
+                Object subject = axiom instanceof OWLPropertyAssertionAxiom ?
+                        ((OWLPropertyAssertionAxiom<?, ?>) axiom).getSubject() : axiom;
+                assertions.computeIfAbsent(subject, k -> new HashSet<>()).add(axiom);
+            } else {
+                schema.add(axiom);
+            }
+        }
+
+        // individuals only mentioned by assertions between individuals are added before any of the assertions
+        OWLDataFactory factory = OWLManager.getOWLDataFactory();
+        for(Set<OWLAxiom> group:assertions.values()){
+            for(OWLAxiom axiom:group){
+                for(OWLNamedIndividual individual:axiom.getIndividualsInSignature()){
+                    if(!individuals.containsKey(individual)){
+                        Set<OWLAxiom> declaration = new HashSet<>();
+                        declaration.add(factory.getOWLDeclarationAxiom(individual));
+                        individuals.put(individual, declaration);
+                    }
+                }
+            }
+        }
+
+        System.out.println("Migrating " + schema.size() + " class and property axioms");
+        try (GraknGraph graph = session.open(GraknTxType.WRITE)) {
+            migrate(graph, schema);
+            graph.commit();
+        }
+        if(inferenceCache != null) inferenceCache.rulesChanged();
+
+        System.out.println("Migrating " + individuals.size() + " individuals");
+        write(individuals.values());
+
+        System.out.println("Migrating assertions between individuals");
+        write(assertions.values());
+    }
+
+    private void write(Collection<Set<OWLAxiom>> axioms){
+        BulkWriter.to(session).batchSize(batchSize).threads(threads).inferenceCache(inferenceCache)
+                .write(axioms.stream().map(group -> (WriteSpec) graph -> migrate(graph, group)));
+    }
+
+    /**
+     * Migrate the axioms into the graph, without committing
+     */
+    private void migrate(GraknGraph graph, Set<OWLAxiom> axioms){
+        OWLOntologyManager manager = managers.get();
+        OWLOntology part;
+        try {
+            part = manager.createOntology(axioms);
+        } catch (OWLOntologyCreationException e){
+            throw new RuntimeException(e);
+        }
+
+        try {
+            new OWLMigrator().ontology(part).graph(graph).migrate();
+        } finally {
+            manager.removeOntology(part);
+        }
+    }
+
+    /**
+     * The named individual that the axiom declares or gives a class or data property value to, if any
+     */
+    private static OWLIndividual individualOf(OWLAxiom axiom){
+        OWLIndividual individual = null;
+        if(axiom instanceof OWLDeclarationAxiom){
+            OWLEntity entity = ((OWLDeclarationAxiom) axiom).getEntity();
+            if(entity.isOWLNamedIndividual()) individual = entity.asOWLNamedIndividual();
+        } else if(axiom instanceof OWLClassAssertionAxiom){
+            individual = ((OWLClassAssertionAxiom) axiom).getIndividual();
+        } else if(axiom instanceof OWLDataPropertyAssertionAxiom){
+            individual = ((OWLDataPropertyAssertionAxiom) axiom).getSubject();
+        }
+        return individual != null && individual.isNamed() ? individual : null;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import ai.grakn.GraknGraph;
+import ai.grakn.concept.ConceptId;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static ai.grakn.graql.Graql.var;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Works out the transitive closure of a relation, such as the ancestors of a person from their parents, by
+ * semi-naive evaluation: each round only follows the edges out of the nodes first reached in the round before,
+ * rather than out of every node reached so far, so no pair is derived more than once. The work of each round is
+ * spread over a fork-join pool.
+ *
+ * @param <T> type of the nodes of the relation
+ */
+public class TransitiveClosure<T> {
+
+    private final Map<T, Set<T>> edges;
+    private final ForkJoinPool pool;
+    private int rounds = 0;
+
+    /**
+     * @param edges nodes each node is directly related to
+     * @param pool pool to run each round on
+     */
+    public TransitiveClosure(Map<T, Set<T>> edges, ForkJoinPool pool){
+        this.edges = edges;
+        this.pool = pool;
+    }
+
+    /**
+     * Every node that can be reached from the start by following one or more edges
+     */
+    public Set<T> reachableFrom(T start){
+        Set<T> reached = ConcurrentHashMap.newKeySet();
+        List<T> frontier = Collections.singletonList(start);
+        rounds = 0;
+
+        while(!frontier.isEmpty()){
+            List<T> current = frontier;
+            // a node is only added to the next frontier by the thread that reaches it first
+            frontier = run(() -> current.parallelStream()
+                    .flatMap(node -> successors(node).stream())
+                    .filter(reached::add)
+                    .collect(toList()));
+            rounds++;
+        }
+        return reached;
+    }
+
+    /**
+     * Every node that can be reached from each node by following one or more edges
+     */
+    public Map<T, Set<T>> closure(){
+        Map<T, Set<T>> closure = new HashMap<>();
+        Map<T, Set<T>> delta = new HashMap<>();
+        edges.forEach((node, successors) -> {
+            closure.put(node, new HashSet<>(successors));
+            delta.put(node, successors);
+        });
+        rounds = 0;
+
+        while(!delta.isEmpty()){
+            Map<T, Set<T>> current = new HashMap<>(delta);
+            // each node's pairs are only read and written by the task for that node
+            Map<T, Set<T>> next = run(() -> current.entrySet().parallelStream()
+                    .collect(toMap(Map.Entry::getKey, entry -> extend(closure.get(entry.getKey()), entry.getValue()))));
+            delta.clear();
+            next.forEach((node, found) -> {
+                if(!found.isEmpty()) delta.put(node, found);
+            });
+            rounds++;
+        }
+        return closure;
+    }
+
+    /**
+     * Number of rounds taken by the last evaluation
+     */
+    public int rounds(){
+        return rounds;
+    }
+
+    /**
+     * Add the nodes one edge on from the newly reached nodes to those reached
+     * @return the nodes that had not been reached before
+     */
+    private Set<T> extend(Set<T> reached, Set<T> newlyReached){
+        Set<T> found = new HashSet<>();
+        for(T node:newlyReached){
+            for(T successor:successors(node)){
+                if(reached.add(successor)) found.add(successor);
+            }
+        }
+        return found;
+    }
+
+    private Set<T> successors(T node){
+        return edges.getOrDefault(node, Collections.emptySet());
+    }
+
+    private <R> R run(Callable<R> round){
+        Future<R> result = pool.submit(round);
+        try {
+            return result.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e){
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Add an edge for every relation of the given type, from the player of one role to the player of the other.
+     * Nothing is added if the relation type does not exist.
+     */
+    public static void addEdges(GraknGraph graph, Map<ConceptId, Set<ConceptId>> edges, String relationType,
+                                String fromRole, String toRole){
+        if(graph.getRelationType(relationType) == null) return;
+
+        graph.graql().infer(false).match(var().rel(fromRole, "from").rel(toRole, "to").isa(relationType))
+                .select("from", "to").stream()
+                .forEach(answer -> edges.computeIfAbsent(answer.get("from").getId(), k -> new HashSet<>())
+                        .add(answer.get("to").getId()));
+    }
+}
@@ -19,6 +19,7 @@
 package ai.grakn.example;
 
 import ai.grakn.client.Client;
+import ai.grakn.example.migration.InstanceCounts;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -28,10 +29,11 @@ public class Main {
 
     protected static final String SERVER_ADDRESS = "127.0.0.1:4567";
     private static final String keyspace = "world";
-    private static final String user = "mindmaps";
-    private static final String pass = "mindmaps";
-    private static final String driver = "com.mysql.jdbc.Driver";
-    private static final String url = "jdbc:mysql://localhost:3306/world";
+    private static final String user = System.getProperty("user", "mindmaps");
+    private static final String pass = System.getProperty("pass", "mindmaps");
+    private static final String driver = System.getProperty("driver", "com.mysql.jdbc.Driver");
+    private static final String url = System.getProperty("url", "jdbc:mysql://localhost:3306/world");
+    private static final int parallelism = Integer.getInteger("parallelism", Runtime.getRuntime().availableProcessors());
 
     public static void main(String[] args) {
         if(!Client.serverIsRunning(SERVER_ADDRESS)){
@@ -44,15 +46,11 @@ public class Main {
             System.out.println("=================================================================================================");
         }
 
-        Connection connection = getConnection(user, pass, url, driver);
-
-        SQLWorldMigrator.migrateWorld(connection, keyspace);
-        SQLWorldMigrator.printInformationAboutWorld(keyspace);
-
         try {
-            connection.close();
-        } catch (SQLException e) {
-           throw new RuntimeException(e);
+            InstanceCounts counts = SQLWorldMigrator.migrateWorld(() -> getConnection(user, pass, url, driver), keyspace, parallelism);
+            SQLWorldMigrator.printInformationAboutWorld(keyspace, counts);
+        } finally {
+            SQLWorldMigrator.close();
         }
     }
 
@@ -0,0 +1,183 @@
+/*
+ * Grakn - A Distributed Semantic Database
+ * Copyright (C) 2016  Grakn Labs Limited
+ *
+ * Grakn is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Grakn is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License:
+ * along with Grakn. If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ */
+
+package ai.grakn.example;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the migration of several tables, migrating tables that do not depend on each other at the same time.
+ *
+ * A table depends on another table when its template matches on a type that the other table's template inserts,
+ * e.g. the cities template matches on country and district so cities is only migrated once countries and
+ * districts are done.
+ */
+public class MigrationScheduler {
+
+    private static final Pattern SECTION_OR_TYPE = Pattern.compile("\\b(match|insert)\\b|\\bisa\\s+([\\w-]+)");
+
+    private final int parallelism;
+    private final Map<String, Table> tables = new LinkedHashMap<>();
+
+    /**
+     * @param parallelism maximum number of tables to migrate at the same time
+     */
+    public MigrationScheduler(int parallelism){
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Register a table to be migrated
+     * @param name name of the table, used in progress output
+     * @param template Graql template the table is migrated with, used to work out dependencies
+     * @param migration the migration of the table
+     */
+    public MigrationScheduler table(String name, String template, Runnable migration){
+        tables.put(name, new Table(name, template, migration));
+        return this;
+    }
+
+    /**
+     * Tables that must be migrated before each table
+     */
+    public Map<String, Set<String>> dependencies(){
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        for(Table table:tables.values()){
+            Set<String> tableDependencies = new HashSet<>();
+            for(Table other:tables.values()){
+                if(table != other && !disjoint(table.matchedTypes, other.insertedTypes)){
+                    tableDependencies.add(other.name);
+                }
+            }
+            dependencies.put(table.name, tableDependencies);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Migrate all registered tables, blocking until they have all finished
+     */
+    public void run(){
+        Map<String, Set<String>> dependencies = dependencies();
+
+        Map<String, Set<String>> dependents = new HashMap<>();
+        Map<String, Integer> waitingOn = new HashMap<>();
+        Queue<String> ready = new ArrayDeque<>();
+        dependencies.forEach((table, tableDependencies) -> {
+            tableDependencies.forEach(dependency -> dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(table));
+            waitingOn.put(table, tableDependencies.size());
+            if(tableDependencies.isEmpty()) ready.add(table);
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        CompletionService<String> completion = new ExecutorCompletionService<>(pool);
+
+        long start = System.nanoTime();
+        int running = 0;
+        int finished = 0;
+        try {
+            while(finished < tables.size()){
+                while(!ready.isEmpty()){
+                    Table table = tables.get(ready.poll());
+                    completion.submit(() -> migrate(table), table.name);
+                    running++;
+                }
+
+                if(running == 0){
+                    throw new IllegalStateException("Cyclic dependency between tables " + waitingOn.keySet());
+                }
+
+                String table = completion.take().get();
+                running--;
+                finished++;
+                waitingOn.remove(table);
+                System.out.println("Finished " + finished + "/" + tables.size() + " tables");
+
+                for(String dependent:dependents.getOrDefault(table, new HashSet<>())){
+                    if(waitingOn.merge(dependent, -1, Integer::sum) == 0) ready.add(dependent);
+                }
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e){
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("Migrated " + tables.size() + " tables in " + millisSince(start) + " ms");
+    }
+
+    private static void migrate(Table table){
+        System.out.println("Migrating " + table.name);
+        long start = System.nanoTime();
+        table.migration.run();
+        System.out.println("Migrated " + table.name + " in " + millisSince(start) + " ms");
+    }
+
+    private static long millisSince(long start){
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static boolean disjoint(Set<String> a, Set<String> b){
+        return a.stream().noneMatch(b::contains);
+    }
+
+    /**
+     * A table to migrate along with the types its template matches on and inserts
+     */
+    private static class Table {
+        private final String name;
+        private final Runnable migration;
+        private final Set<String> matchedTypes = new HashSet<>();
+        private final Set<String> insertedTypes = new HashSet<>();
+
+        private Table(String name, String template, Runnable migration){
+            this.name = name;
+            this.migration = migration;
+
+            Set<String> section = null;
+            Matcher matcher = SECTION_OR_TYPE.matcher(template);
+            while(matcher.find()){
+                if(matcher.group(1) != null){
+                    section = matcher.group(1).equals("match") ? matchedTypes : insertedTypes;
+                } else if(section != null){
+                    section.add(matcher.group(2));
+                }
+            }
+        }
+    }
+}
@@ -20,89 +20,180 @@ package ai.grakn.example;
 
 import ai.grakn.Grakn;
 import ai.grakn.GraknGraph;
+import ai.grakn.GraknSession;
 import ai.grakn.GraknTxType;
-import ai.grakn.exception.GraknValidationException;
-import ai.grakn.graql.Graql;
-import ai.grakn.migration.base.Migrator;
-import ai.grakn.migration.sql.SQLMigrator;
+import ai.grakn.example.migration.GraqlFileLoader;
+import ai.grakn.example.migration.InstanceCounts;
+import ai.grakn.example.migration.LookupCache;
+import ai.grakn.example.migration.MigrationPipeline;
+import ai.grakn.example.migration.PreparedQuery;
+import ai.grakn.example.migration.QueryPlanCache;
+import ai.grakn.example.migration.SessionPool;
+import ai.grakn.example.migration.StreamingSQLSource;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
-import static ai.grakn.example.Main.SERVER_ADDRESS;
 import static ai.grakn.graql.Graql.var;
 import static java.util.stream.Collectors.joining;
 
 public class SQLWorldMigrator {
 
-      /**
+    private static final String[] TABLES = {
+            "continents", "regions", "countries", "districts", "cities", "capitals", "languages", "languagesspoken"};
+
+    // Tables mapped to the column that uniquely identifies each row, so they are read in pages ordered by that
+    // column and a resumed migration starts after the last key committed. languagesspoken has no single key column,
+    // so its query orders the rows itself and a resumed migration skips the number of rows committed.
+    private static final Map<String, String> KEY_COLUMNS = new HashMap<>();
+    private static final int FETCH_SIZE = 1000;
+    private static final int PAGE_SIZE = 10000;
+    private static final int LOOKUP_CACHE_SIZE = 100000;
+    private static final int TEMPLATE_THREADS = 1;
+    private static final int WRITE_THREADS = 2;
+    // Types whose instances are counted as they are migrated, so they can be counted without going through them
+    private static final String[] COUNTED_TYPES = {"country", "city"};
+    // Progress of each table, kept until the whole world has been migrated so a stopped migration can be resumed
+    private static final Path CHECKPOINT_DIR = Paths.get("migration-checkpoints");
+    // Sessions kept warm between loading the ontology, migrating the tables and querying the result
+    private static final SessionPool SESSIONS = new SessionPool(Grakn.DEFAULT_URI);
+    // Queries asked again with only a value changed, prepared once and kept parsed
+    private static final QueryPlanCache QUERIES = new QueryPlanCache(1000);
+    private static final PreparedQuery CITIES_IN_COUNTRY = QUERIES.prepare(
+            "$country isa country has name <country>; $city isa city has name $name; ($country, $city);");
+
+    static {
+        KEY_COLUMNS.put("continents", "continent");
+        KEY_COLUMNS.put("regions", "region");
+        KEY_COLUMNS.put("countries", "code");
+        KEY_COLUMNS.put("districts", "district");
+        KEY_COLUMNS.put("cities", "id");
+        KEY_COLUMNS.put("capitals", "code");
+        KEY_COLUMNS.put("languages", "language");
+    }
+
+    /**
      * Migrate data using SQL statements
-     * @param connection jdbc connection to the SQL databse
+     * @param connections supplies a jdbc connection to the SQL database for each table being migrated
      * @param keyspace graph to migrate data into
+     * @param parallelism maximum number of tables to migrate at the same time
+     * @return counts of the countries and cities in the graph, kept up to date as they were migrated
      */
-    public static void migrateWorld(Connection connection, String keyspace){
+    public static InstanceCounts migrateWorld(Supplier<Connection> connections, String keyspace, int parallelism){
         load("ontology.gql", keyspace);
 
-        migrate(connection, keyspace, "continents");
-        migrate(connection, keyspace, "regions");
-        migrate(connection, keyspace, "countries");
-        migrate(connection, keyspace, "districts");
-        migrate(connection, keyspace, "cities");
-        migrate(connection, keyspace, "capitals");
-        migrate(connection, keyspace, "languages");
-        migrate(connection, keyspace, "languagesspoken");
+        GraknSession session = SESSIONS.session(keyspace);
+        try {
+            InstanceCounts counts = new InstanceCounts();
+            try (SessionPool.Transaction transaction = SESSIONS.open(keyspace, GraknTxType.READ)) {
+                counts.track(transaction.graph(), COUNTED_TYPES);
+            }
+
+            // countries and districts are looked up by unique code and name, so they can be cached
+            LookupCache lookups = new LookupCache(LOOKUP_CACHE_SIZE)
+                    .keys("country", "countrycode")
+                    .keys("district", "name");
+            // each table is read, templated and written by its own pipeline, skipping rows committed by a
+            // previous run that stopped part way through
+            MigrationPipeline pipeline = MigrationPipeline.to(session)
+                    .templateThreads(TEMPLATE_THREADS)
+                    .writeThreads(WRITE_THREADS)
+                    .lookupCache(lookups)
+                    .instanceCounts(counts)
+                    .replay(true);
+
+            Files.createDirectories(CHECKPOINT_DIR);
+            MigrationScheduler scheduler = new MigrationScheduler(parallelism);
+            for(String table:TABLES){
+                scheduler.table(table, get(table + "/template.gql"), () -> migrate(connections, pipeline, table));
+            }
+            scheduler.run();
+
+            // everything is migrated, so the next run should start from scratch
+            for(String table:TABLES){
+                Files.deleteIfExists(checkpoint(table));
+            }
+            Files.deleteIfExists(CHECKPOINT_DIR);
+
+            System.out.println("Lookup cache: " + lookups);
+            return counts;
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
     }
 
-    private static void migrate(Connection connection, String keyspace, String toMigrateDir){
+    private static void migrate(Supplier<Connection> connections, MigrationPipeline pipeline, String toMigrateDir){
         String query = get(toMigrateDir + "/query.sql");
         String template = get(toMigrateDir + "/template.gql");
 
-        System.out.println("Migrating " + toMigrateDir);
+        try (Connection connection = connections.get()) {
+            StreamingSQLSource source = new StreamingSQLSource(query, connection).fetchSize(FETCH_SIZE);
+            if(KEY_COLUMNS.containsKey(toMigrateDir)){
+                source.keyset(KEY_COLUMNS.get(toMigrateDir), PAGE_SIZE);
+            }
 
-        Migrator.to(SERVER_ADDRESS, keyspace).load(template, new SQLMigrator(query, connection).convert());
+            pipeline.load(template, source, checkpoint(toMigrateDir));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Path checkpoint(String table){
+        return CHECKPOINT_DIR.resolve(table + ".properties");
     }
 
     /**
      * Prints information about the migrated database
      */
     public static void printInformationAboutWorld(String keyspace){
-        GraknGraph graph = Grakn.session(Grakn.DEFAULT_URI, keyspace).open(GraknTxType.WRITE);
-
-        // What are the types that were migrated?
-        System.out.println("Migrated Types:");
-        graph.admin().getMetaEntityType().instances().forEach(System.out::println);
-
-        // How many countries are in the world?
-        Long numberCountries = graph.graql().match(var("x").isa("country")).distinct().aggregate(Graql.count()).execute();
-        System.out.println("\n" + numberCountries + " countries in our world");
-
-        // How many cities in the world?
-        Long numberCities = graph.graql().match(var("x").isa("city")).distinct().aggregate(Graql.count()).execute();
-        System.out.println("\n" + numberCities + " cities in our world" + "\n");
-
-        // What are the cities in Niger?
-        System.out.println("Cities in Niger:");
-        graph.graql().match(
-                var("country").isa("country").has("name", "Niger"),
-                var("city").isa("city").has("name", var("name")),
-                var().rel("country").rel("city")).select("name").distinct()
-                .stream().map(i -> i.get("name").asResource().getValue()).forEach(System.out::println);
+        printInformationAboutWorld(keyspace, new InstanceCounts());
     }
 
-    private static void load(String ontologyFile, String keyspace){
-        String ontology = get(ontologyFile);
+    /**
+     * Prints information about the migrated database, counting instances from the given counts where they are kept
+     */
+    public static void printInformationAboutWorld(String keyspace, InstanceCounts counts){
+        try (SessionPool.Transaction transaction = SESSIONS.open(keyspace, GraknTxType.READ)) {
+            GraknGraph graph = transaction.graph();
+
+            // What are the types that were migrated?
+            System.out.println("Migrated Types:");
+            graph.admin().getMetaEntityType().instances().forEach(System.out::println);
+
+            // How many countries are in the world?
+            long numberCountries = counts.count(graph.graql().match(var("x").isa("country")).distinct());
+            System.out.println("\n" + numberCountries + " countries in our world");
+
+            // How many cities in the world?
+            long numberCities = counts.count(graph.graql().match(var("x").isa("city")).distinct());
+            System.out.println("\n" + numberCities + " cities in our world" + "\n");
+
+            // What are the cities in Niger?
+            System.out.println("Cities in Niger:");
+            CITIES_IN_COUNTRY.bind(graph, "country", "Niger").select("name").distinct()
+                    .stream().map(i -> i.get("name").asResource().getValue()).forEach(System.out::println);
+        }
+
+        System.out.println("\nSession pool: " + SESSIONS);
+    }
+
+    /**
+     * Close the sessions kept warm between the migration and the queries, once the world is no longer needed
+     */
+    public static void close(){
+        SESSIONS.close();
+    }
 
+    private static void load(String ontologyFile, String keyspace){
         System.out.println("Loading " + ontologyFile);
-        GraknGraph graph = Grakn.session(Grakn.DEFAULT_URI, keyspace).open(GraknTxType.WRITE);
-        graph.graql().parse(ontology).execute();
-        try {
-            graph.commit();
-        } catch (GraknValidationException e) {
-            throw new RuntimeException(e);
-        }
+        GraqlFileLoader.to(SESSIONS.session(keyspace)).load(getResource(ontologyFile));
     }
 
     private static String get(String resourceName) {
@@ -1 +1 @@
-SELECT * from countrylanguage;
\ No newline at end of file
+SELECT * from countrylanguage ORDER BY countrycode, language;
\ No newline at end of file